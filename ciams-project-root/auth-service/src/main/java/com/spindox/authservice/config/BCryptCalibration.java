@@ -0,0 +1,46 @@
+package com.spindox.authservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Chooses the BCrypt cost on the current hardware. One hash is timed at the minimum cost,
+ * every step of the cost doubles the time, so the cost is raised while the estimate stays within the target
+ */
+@Slf4j
+final class BCryptCalibration {
+
+    private static final int MAX_STRENGTH = 31;
+    private static final int SAMPLES = 3;
+
+    private BCryptCalibration() {
+    }
+
+    /**
+     * @param targetLatency the time a hash should take on one core
+     * @param minStrength   the cost never gone below, whatever the speed of the hardware
+     * @return the highest cost whose hashes are estimated within the target
+     */
+    static int strengthFor(Duration targetLatency, int minStrength) {
+        // the first hash warms up the JIT, the fastest of the other samples is kept
+        String salt = BCrypt.gensalt(minStrength);
+        BCrypt.hashpw("calibration", salt);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        int strength = minStrength;
+        long estimate = fastest;
+        while (strength < MAX_STRENGTH && estimate * 2 <= targetLatency.toNanos()) {
+            strength++;
+            estimate *= 2;
+        }
+        log.info("BCrypt cost {} chosen, {} ms per hash at cost {}, about {} ms at cost {}",
+                strength, fastest / 1_000_000, minStrength, estimate / 1_000_000, strength);
+        return strength;
+    }
+}
@@ -0,0 +1,59 @@
+package com.spindox.authservice.config;
+
+import com.spindox.authservice.dto.MessageResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+@Slf4j
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    @Value("${auth.password.hashing.retry-after:2s}")
+    private Duration retryAfter;
+
+    //401, wrong username or password, the message doesn't tell which one
+    @ExceptionHandler({AuthenticationException.class})
+    public ResponseEntity<MessageResponseDTO> handleUnauthorizedException(AuthenticationException ex) {
+        log.info("GlobalExceptionHandler - AuthenticationException: " + ex.getMessage());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                .body(new MessageResponseDTO(ex.getMessage(), HttpStatus.UNAUTHORIZED.value()));
+    }
+
+    //400
+    @ExceptionHandler({BadRequestException.class, HttpMessageNotReadableException.class})
+    public ResponseEntity<MessageResponseDTO> handleBadRequestException(Exception ex) {
+        log.info("GlobalExceptionHandler - BadRequestException: " + ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new MessageResponseDTO(ex.getMessage(), HttpStatus.BAD_REQUEST.value()));
+    }
+
+    //409, the username is taken, refused by the unique index
+    @ExceptionHandler({DuplicateKeyException.class})
+    public ResponseEntity<MessageResponseDTO> handleConflictException(DuplicateKeyException ex) {
+        log.info("GlobalExceptionHandler - DuplicateKeyException: " + ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponseDTO(ex.getMessage(), HttpStatus.CONFLICT.value()));
+    }
+
+    //503, the password hashing pool is saturated
+    @ExceptionHandler({RejectedExecutionException.class})
+    public ResponseEntity<MessageResponseDTO> handleUnavailableException(RejectedExecutionException ex) {
+        log.warn("GlobalExceptionHandler - RejectedExecutionException: " + ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                .body(new MessageResponseDTO(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE.value()));
+    }
+}
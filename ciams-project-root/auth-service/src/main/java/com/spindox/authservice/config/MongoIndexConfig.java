@@ -0,0 +1,56 @@
+package com.spindox.authservice.config;
+
+import com.spindox.authservice.model.StoredSigningKey;
+import com.spindox.authservice.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Creates the indexes declared on the {@link User} and the {@link StoredSigningKey} once the application has started,
+ * e.g. the unique indexes the signups and the rotation of the keys rely on. The automatic index creation of Spring Data is off: it reaches Mongo while
+ * the MongoTemplate is created, and fails the whole context when Mongo is not there
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "auth.users.ensure-indexes", havingValue = "true", matchIfMissing = true)
+class MongoIndexConfig {
+
+    private static final List<Class<?>> INDEXED = List.of(User.class, StoredSigningKey.class);
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    ApplicationRunner userIndexes(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        return args -> INDEXED.forEach(type -> {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            IndexResolver.create(mappingContext).resolveIndexFor(type)
+                    .forEach(index -> log.info("Index {} of {} ensured", indexOps.createIndex(index), type.getSimpleName()));
+        });
+    }
+
+    // the application is not ready before the indexes are there, the runner waits for them
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    ApplicationRunner reactiveUserIndexes(ReactiveMongoTemplate reactiveMongoTemplate, MongoMappingContext mappingContext) {
+        return args -> Flux.fromIterable(INDEXED)
+                .concatMap(type -> {
+                    ReactiveIndexOperations indexOps = reactiveMongoTemplate.indexOps(type);
+                    return Flux.fromIterable(IndexResolver.create(mappingContext).resolveIndexFor(type))
+                            .concatMap(indexOps::createIndex)
+                            .doOnNext(name -> log.info("Index {} of {} ensured", name, type.getSimpleName()));
+                })
+                .blockLast();
+    }
+}
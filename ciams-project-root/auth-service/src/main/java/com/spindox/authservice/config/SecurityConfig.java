@@ -0,0 +1,85 @@
+package com.spindox.authservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spindox.authservice.token.SigningKeys;
+import com.spindox.authservice.token.TokenAuthenticationFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+import java.time.Duration;
+
+@Configuration
+class SecurityConfig {
+
+    // signup, the token and the key set are public, the tokens are the credentials of the other services.
+    // A signup only gets the signup roles, the other roles are given by the bulk provisioning,
+    // which takes a token with the ADMIN role
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    SecurityFilterChain filterChain(HttpSecurity http, SigningKeys signingKeys, ObjectMapper objectMapper,
+                                    @Value("${auth.token.issuer:ciams-auth}") String issuer,
+                                    @Value("${auth.token.clock-skew:1m}") Duration clockSkew) throws Exception {
+        http.csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/signup", "/token", "/.well-known/jwks.json", "/error").permitAll()
+                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        .requestMatchers("/users/bulk").hasRole("ADMIN")
+                        .anyRequest().authenticated()
+                )
+                .addFilterBefore(new TokenAuthenticationFilter(signingKeys, objectMapper, issuer, clockSkew),
+                        BasicAuthenticationFilter.class)
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
+
+        return http.build();
+    }
+
+    // the reactive stack serves signup, the token and the key set only
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    SecurityWebFilterChain reactiveFilterChain(ServerHttpSecurity http) {
+        return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers("/signup", "/token", "/.well-known/jwks.json").permitAll()
+                        .pathMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        .anyExchange().authenticated()
+                )
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .build();
+    }
+
+    // Tomcat is on the classpath for the servlet stack, the reactive one runs on Netty
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // a fixed strength skips the calibration, e.g. to keep the same cost on every replica
+    @Bean
+    PasswordEncoder passwordEncoder(@Value("${auth.password.hashing.strength:0}") int strength,
+                                    @Value("${auth.password.hashing.target-latency:250ms}") Duration targetLatency,
+                                    @Value("${auth.password.hashing.min-strength:10}") int minStrength) {
+        return new BCryptPasswordEncoder(strength > 0 ? strength : BCryptCalibration.strengthFor(targetLatency, minStrength));
+    }
+}
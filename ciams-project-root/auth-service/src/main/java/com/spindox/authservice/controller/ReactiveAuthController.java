@@ -0,0 +1,54 @@
+package com.spindox.authservice.controller;
+
+import com.spindox.authservice.dto.LoginDto;
+import com.spindox.authservice.dto.TokenDto;
+import com.spindox.authservice.dto.UserDto;
+import com.spindox.authservice.service.ReactiveAuthService;
+import com.spindox.authservice.token.SigningKeys;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+
+// the endpoints of UserController and TokenController on the reactive stack, the bulk provisioning stays on the servlet one
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthController {
+
+    @Autowired
+    private ReactiveAuthService authService;
+
+    @Autowired
+    private SigningKeys signingKeys;
+
+    @PostMapping("/signup")
+    public Mono<ResponseEntity<UserDto>> signup(@Valid @RequestBody UserDto userDto) {
+        return authService.saveUser(userDto).thenReturn(ResponseEntity.ok(userDto));
+    }
+
+    @PostMapping("/token")
+    public Mono<ResponseEntity<TokenDto>> token(@Valid @RequestBody LoginDto loginDto) {
+        return authService.issueToken(loginDto)
+                .map(token -> ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(token));
+    }
+
+    // the first request reads the keys from Mongo, off the event loop
+    @GetMapping("/.well-known/jwks.json")
+    public Mono<ResponseEntity<Map<String, Object>>> jwks() {
+        return Mono.fromCallable(signingKeys::jwkSet)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(jwkSet -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                        .body(jwkSet));
+    }
+}
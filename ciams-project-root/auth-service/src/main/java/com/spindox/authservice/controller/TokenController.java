@@ -0,0 +1,44 @@
+package com.spindox.authservice.controller;
+
+import com.spindox.authservice.dto.LoginDto;
+import com.spindox.authservice.dto.TokenDto;
+import com.spindox.authservice.service.TokenService;
+import com.spindox.authservice.token.SigningKeys;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class TokenController {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private SigningKeys signingKeys;
+
+    @PostMapping("/token")
+    public ResponseEntity<TokenDto> token(@Valid @RequestBody LoginDto loginDto) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(tokenService.issueToken(loginDto));
+    }
+
+    // the public keys of the token signatures, the verifiers cache them
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(signingKeys.jwkSet());
+    }
+}
@@ -1,15 +1,21 @@
 package com.spindox.authservice.controller;
 
 import com.spindox.authservice.dto.UserDto;
+import com.spindox.authservice.dto.UserProvisioningResultDto;
 import com.spindox.authservice.service.UserService;
 import jakarta.validation.Valid;
+import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserController {
     
     
@@ -21,4 +27,10 @@ public class UserController {
         userService.saveUser(userDto);
         return ResponseEntity.ok(userDto);
     }
+
+    // the users are inserted independently, the response lists the ones refused and why
+    @PostMapping("/users/bulk")
+    public ResponseEntity<UserProvisioningResultDto> provisionUsers(@RequestBody List<UserDto> userDtos) throws BadRequestException {
+        return ResponseEntity.ok(userService.provisionUsers(userDtos));
+    }
 }
@@ -0,0 +1,13 @@
+package com.spindox.authservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class LoginDto {
+
+    @NotBlank
+    private String username;
+    @NotBlank
+    private String password;
+}
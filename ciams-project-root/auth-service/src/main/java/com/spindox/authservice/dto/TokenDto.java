@@ -0,0 +1,16 @@
+package com.spindox.authservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TokenDto {
+
+    //signed JWT, sent to the other services as "Authorization: Bearer <accessToken>"
+    private String accessToken;
+    //always "Bearer"
+    private String tokenType;
+    //seconds before the token expires
+    private long expiresIn;
+}
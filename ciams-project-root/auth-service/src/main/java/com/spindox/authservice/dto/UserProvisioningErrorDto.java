@@ -0,0 +1,18 @@
+package com.spindox.authservice.dto;
+
+import lombok.Data;
+
+@Data
+public class UserProvisioningErrorDto {
+
+    //position of the user in the request, starting from 0
+    private int index;
+    private String username;
+    private String message;
+
+    public UserProvisioningErrorDto(int index, String username, String message) {
+        this.index = index;
+        this.username = username;
+        this.message = message;
+    }
+}
@@ -0,0 +1,14 @@
+package com.spindox.authservice.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class UserProvisioningResultDto {
+
+    private int received;
+    private int inserted;
+    private List<UserProvisioningErrorDto> errors = new ArrayList<>();
+}
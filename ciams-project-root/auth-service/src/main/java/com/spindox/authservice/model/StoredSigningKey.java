@@ -0,0 +1,32 @@
+package com.spindox.authservice.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@Document(collection = "SigningKey")
+public class StoredSigningKey {
+
+    // the key id, the "kid" of the JWT header
+    @Id
+    private String id;
+    // unique, two replicas rotating at once can't both add the next key
+    @Indexed(unique = true)
+    private Instant activeFrom;
+    // PKCS#8 and X.509 encodings, in base64
+    private String privateKey;
+    private String publicKey;
+
+    public StoredSigningKey(String id, Instant activeFrom, String privateKey, String publicKey) {
+        this.id = id;
+        this.activeFrom = activeFrom;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+    }
+}
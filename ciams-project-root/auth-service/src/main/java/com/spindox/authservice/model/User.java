@@ -1,21 +1,30 @@
 package com.spindox.authservice.model;
 
 import lombok.Data;
-import jakarta.persistence.*;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
 
 @Data
+@NoArgsConstructor
 @Document(collection = "User")
 public class User {
 
     @Id
     private String id;
+    // unique, a signup is a single insert refused by the index when the username is taken.
+    // The index is created at startup by MongoIndexConfig
+    @Indexed(unique = true)
     private String username;
     private String password;
     private ArrayList<String> roles;
 
     public User(String username, ArrayList<String> roles, String hashedPassword) {
+        this.username = username;
+        this.roles = roles;
+        this.password = hashedPassword;
     }
-}
\ No newline at end of file
+}
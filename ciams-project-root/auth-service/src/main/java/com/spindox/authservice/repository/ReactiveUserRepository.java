@@ -0,0 +1,22 @@
+package com.spindox.authservice.repository;
+
+import com.spindox.authservice.model.User;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * The queries of {@link UserRepository} on the reactive driver, used by the reactive stack
+ */
+@Repository
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, String> {
+
+    @Query(value = "{ 'username': ?0 }", fields = "{ '_id': 0, 'username': 1, 'password': 1, 'roles': 1 }")
+    Mono<UserCredentials> findCredentialsByUsername(String username);
+
+    @Query("{ 'username': ?0, 'password': ?1 }")
+    @Update("{ '$set': { 'password': ?2 } }")
+    Mono<Long> updatePassword(String username, String oldPassword, String newPassword);
+}
@@ -0,0 +1,15 @@
+package com.spindox.authservice.repository;
+
+import java.util.List;
+
+/**
+ * The fields of a user needed by a login
+ */
+public interface UserCredentials {
+
+    String getUsername();
+
+    String getPassword();
+
+    List<String> getRoles();
+}
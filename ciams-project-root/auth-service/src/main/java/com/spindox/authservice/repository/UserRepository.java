@@ -2,6 +2,8 @@ package com.spindox.authservice.repository;
 
 import com.spindox.authservice.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +12,14 @@ import java.util.Optional;
 public interface UserRepository extends MongoRepository<User,String> {
 
     Optional<User> findByUsername(String username);
+
+    // only the fields of a login, found through the unique index on the username.
+    // The roles are an array, a multikey index can't cover them, the document is still read but not sent whole
+    @Query(value = "{ 'username': ?0 }", fields = "{ '_id': 0, 'username': 1, 'password': 1, 'roles': 1 }")
+    Optional<UserCredentials> findCredentialsByUsername(String username);
+
+    // replaces the hash only if nobody changed it since it was read
+    @Query("{ 'username': ?0, 'password': ?1 }")
+    @Update("{ '$set': { 'password': ?2 } }")
+    long updatePassword(String username, String oldPassword, String newPassword);
 }
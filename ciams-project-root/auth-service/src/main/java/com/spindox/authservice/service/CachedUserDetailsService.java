@@ -0,0 +1,32 @@
+package com.spindox.authservice.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Users of the logins of the servlet stack, read through the {@link UserCredentialsCache}
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CachedUserDetailsService implements UserDetailsService {
+
+    @Autowired
+    private UserCredentialsCache credentialsCache;
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserCredentialsCache.Credentials credentials = credentialsCache.get(username);
+        if (credentials == null) {
+            throw new UsernameNotFoundException("User " + username + " not found");
+        }
+        return User.withUsername(credentials.username())
+                .password(credentials.password())
+                .roles(credentials.roles().toArray(String[]::new))
+                .build();
+    }
+}
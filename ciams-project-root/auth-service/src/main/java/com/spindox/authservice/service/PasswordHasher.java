@@ -0,0 +1,235 @@
+package com.spindox.authservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the password hashes and checks on a bounded pool instead of the request threads.
+ * At most as many hashes as the threads of the pool run at once, the others wait in a bounded queue.
+ * When the queue is full, or a hash waits longer than the max wait, a RejectedExecutionException is thrown
+ * and the request is answered with 503 and Retry-After. By default the pool has one thread less than the cores,
+ * so a burst of signups or logins leaves a core to the other endpoints.
+ * The reactive stack runs its hashes on the same pool, off the event loop
+ */
+@Slf4j
+@Service
+public class PasswordHasher {
+
+    @Autowired
+    private PasswordEncoder encoder;
+
+    // 0 uses one thread less than the cores, at least one
+    @Value("${auth.password.hashing.threads:0}")
+    private int threads;
+
+    @Value("${auth.password.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.password.hashing.max-wait:5s}")
+    private Duration maxWait;
+
+    // hashes of a batch running at once, 0 uses half the threads, the rest stays for the logins
+    @Value("${auth.password.hashing.batch-parallelism:0}")
+    private int batchParallelism;
+
+    private ThreadPoolExecutor executor;
+
+    // the same pool seen by the reactive stack
+    private Scheduler scheduler;
+
+    @PostConstruct
+    void start() {
+        int poolSize = poolSize(threads, Runtime.getRuntime().availableProcessors());
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        scheduler = Schedulers.fromExecutorService(executor, "password-hasher");
+        log.info("Password hashing on {} threads, {} queued hashes at most", poolSize, queueCapacity);
+    }
+
+    // the hashes keep a core free for the requests that don't hash, unless the machine has a single one
+    static int poolSize(int threads, int cores) {
+        return threads > 0 ? threads : Math.max(1, cores - 1);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+    /**
+     * @param rawPassword the password given by the user
+     * @return the hash of the password, with the current cost
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * @param rawPassword     the password given by the user
+     * @param encodedPassword the stored hash
+     * @return true if the password matches the hash
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Same as {@link #encode(CharSequence)} without blocking, the hash runs on the pool
+     *
+     * @param rawPassword the password given by the user
+     * @return the hash of the password, or a RejectedExecutionException if the pool is saturated
+     */
+    public Mono<String> encodeReactive(CharSequence rawPassword) {
+        return onPool(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Same as {@link #matches(CharSequence, String)} without blocking, the check runs on the pool
+     *
+     * @param rawPassword     the password given by the user
+     * @param encodedPassword the stored hash
+     * @return true if the password matches the hash, or a RejectedExecutionException if the pool is saturated
+     */
+    public Mono<Boolean> matchesReactive(CharSequence rawPassword, String encodedPassword) {
+        return onPool(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Hashes many passwords in parallel, with at most the batch parallelism of them on the pool at once,
+     * so the signups and the logins still find a free thread
+     *
+     * @param rawPasswords the passwords given by the users
+     * @return the hashes, in the order of the passwords
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        int parallelism = batchParallelism > 0 ? batchParallelism : Math.max(1, executor.getMaximumPoolSize() / 2);
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (CharSequence rawPassword : rawPasswords) {
+                permits.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return encoder.encode(rawPassword);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<String> hashes = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                hashes.add(future.get());
+            }
+            return hashes;
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            log.warn("Password hashing pool saturated, batch of {} hashes given up", rawPasswords.size());
+            throw new RejectedExecutionException("Too many password checks in progress, retry later", e);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the password hashes", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @param encodedPassword the stored hash
+     * @return true if the hash was made with a lower cost than the current one
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Hashes a password again in the background, nothing is done when the pool is saturated:
+     * the upgrade is tried again at the next login
+     *
+     * @param rawPassword the password just checked
+     * @param store       saves the new hash
+     */
+    public void encodeLater(CharSequence rawPassword, Consumer<String> store) {
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(encoder.encode(rawPassword));
+                } catch (RuntimeException e) {
+                    log.warn("Password hash upgrade failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Password hash upgrade skipped, hashing pool saturated");
+        }
+    }
+
+    // a full queue fails the subscription with a RejectedExecutionException, like the blocking calls
+    private <T> Mono<T> onPool(Callable<T> task) {
+        return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .timeout(maxWait)
+                .onErrorMap(TimeoutException.class,
+                        e -> new RejectedExecutionException("Password check not completed within " + maxWait + ", retry later", e));
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing pool saturated, {} hashes queued", executor.getQueue().size());
+            throw new RejectedExecutionException("Too many password checks in progress, retry later", e);
+        }
+        try {
+            return future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password check not completed within " + maxWait + ", retry later", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the password check", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.spindox.authservice.service;
+
+import com.spindox.authservice.dto.LoginDto;
+import com.spindox.authservice.dto.TokenDto;
+import com.spindox.authservice.dto.UserDto;
+import com.spindox.authservice.model.User;
+import com.spindox.authservice.repository.ReactiveUserRepository;
+import com.spindox.authservice.token.TokenSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signups and logins of the reactive stack, the same rules as {@link UserService} and {@link TokenService}.
+ * Mongo is read with the reactive driver, the hashes run on the bounded pool of the {@link PasswordHasher},
+ * the event loop never blocks
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthService {
+
+    @Autowired
+    private ReactiveUserRepository repository;
+
+    @Autowired
+    private UserCredentialsCache credentialsCache;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Value("${auth.users.signup-roles:USER}")
+    private List<String> signupRoles;
+
+    /**
+     * @param userDto the new user, with its password in clear, its roles are replaced by the signup roles
+     * @return completes when the user is inserted, or a DuplicateKeyException if the username is taken
+     */
+    public Mono<Void> saveUser(UserDto userDto) {
+        userDto.setRoles(new ArrayList<>(signupRoles));
+        return passwordHasher.encodeReactive(userDto.getPassword())
+                .flatMap(hashedPassword -> repository.insert(new User(userDto.getUsername(), userDto.getRoles(), hashedPassword)))
+                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateKeyException(
+                        String.format("User with the email address '%s' already exists.", userDto.getUsername()), e))
+                .then();
+    }
+
+    /**
+     * @param loginDto the username and the password
+     * @return the signed token, or a BadCredentialsException if the user doesn't exist or the password doesn't match
+     */
+    public Mono<TokenDto> issueToken(LoginDto loginDto) {
+        return credentialsCache.getReactive(loginDto.getUsername())
+                .filterWhen(credentials -> passwordHasher.matchesReactive(loginDto.getPassword(), credentials.password()))
+                .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Invalid username or password")))
+                .map(credentials -> {
+                    if (passwordHasher.needsUpgrade(credentials.password())) {
+                        upgrade(loginDto.getPassword(), credentials);
+                    }
+                    return tokenSigner.sign(credentials.username(), credentials.roles());
+                });
+    }
+
+    // a hash made with a lower cost is replaced after the login, the token doesn't wait for it
+    private void upgrade(String rawPassword, UserCredentialsCache.Credentials credentials) {
+        passwordHasher.encodeReactive(rawPassword)
+                .flatMap(newPassword -> repository.updatePassword(credentials.username(), credentials.password(), newPassword))
+                .doOnSuccess(updated -> credentialsCache.evict(credentials.username()))
+                .subscribe(updated -> { }, e -> log.debug("Password hash upgrade skipped: " + e.getMessage()));
+    }
+}
@@ -0,0 +1,74 @@
+package com.spindox.authservice.service;
+
+import com.spindox.authservice.dto.LoginDto;
+import com.spindox.authservice.dto.TokenDto;
+import com.spindox.authservice.repository.UserRepository;
+import com.spindox.authservice.token.TokenSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Issues the access tokens of the servlet stack, signed by the {@link TokenSigner}.
+ * The password is checked once, here, the other services only verify the signature
+ * with the public keys and never call back the auth service or the user store
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class TokenService {
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserCredentialsCache credentialsCache;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    /**
+     * Checks the credentials of a user and issues a token carrying its username and roles
+     *
+     * @param loginDto the username and the password
+     * @return the signed token and its lifetime
+     * @throws BadCredentialsException if the user doesn't exist or the password doesn't match
+     * @throws java.util.concurrent.RejectedExecutionException if the password hashing pool is saturated
+     */
+    public TokenDto issueToken(LoginDto loginDto) {
+        log.info("Inside the service, issueToken method");
+        UserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(loginDto.getUsername());
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException("Invalid username or password");
+        }
+        if (!passwordHasher.matches(loginDto.getPassword(), user.getPassword())) {
+            throw new BadCredentialsException("Invalid username or password");
+        }
+        // a hash made with a lower cost is replaced after the login, the token doesn't wait for it
+        if (passwordHasher.needsUpgrade(user.getPassword())) {
+            String oldPassword = user.getPassword();
+            passwordHasher.encodeLater(loginDto.getPassword(), newPassword -> {
+                repository.updatePassword(user.getUsername(), oldPassword, newPassword);
+                credentialsCache.evict(user.getUsername());
+            });
+        }
+
+        return tokenSigner.sign(user.getUsername(), user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .map(authority -> authority.startsWith("ROLE_") ? authority.substring("ROLE_".length()) : authority)
+                .toList());
+    }
+}
@@ -0,0 +1,35 @@
+package com.spindox.authservice.service;
+
+import com.spindox.authservice.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts the cached users on every save and delete made through the repository or the template.
+ * The updates made with update queries don't raise these events, they evict the user themselves
+ */
+@Component
+public class UserCacheEvictionListener extends AbstractMongoEventListener<User> {
+
+    @Autowired
+    private UserCredentialsCache credentialsCache;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        credentialsCache.evict(event.getSource().getUsername());
+    }
+
+    // a delete by id doesn't carry the username, every user is evicted then
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        Object username = event.getSource().get("username");
+        if (username instanceof String name) {
+            credentialsCache.evict(name);
+        } else {
+            credentialsCache.evictAll();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.spindox.authservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spindox.authservice.repository.ReactiveUserRepository;
+import com.spindox.authservice.repository.UserCredentials;
+import com.spindox.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Credentials of the users, read from Mongo with a projection and kept in a Caffeine cache.
+ * A login of a known user doesn't reach Mongo, the entries are evicted when the user is saved or deleted
+ * on this replica and expire after the TTL of the spec, the bound of the staleness left by the other replicas.
+ * The unknown usernames are not cached. The servlet and the reactive stacks share the cache,
+ * each one reads Mongo with its own driver, only the repository of the running stack exists.
+ * The cache is published as the "auth.users" cache metrics, the Mongo lookups as the "auth.users.lookup" timer
+ */
+@Service
+public class UserCredentialsCache {
+
+    /**
+     * Immutable, the UserDetails handed out are built again from it and can have their credentials erased
+     */
+    public record Credentials(String username, String password, List<String> roles) {
+    }
+
+    // servlet stack
+    @Autowired(required = false)
+    private UserRepository repository;
+
+    // reactive stack
+    @Autowired(required = false)
+    private ReactiveUserRepository reactiveRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.users.cache.spec:maximumSize=10000,expireAfterWrite=5m}")
+    private String spec;
+
+    private Cache<String, Credentials> cache;
+
+    private Timer lookups;
+
+    @PostConstruct
+    void start() {
+        cache = Caffeine.from(spec).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.users");
+        lookups = Timer.builder("auth.users.lookup")
+                .description("Time spent reading the credentials of a user from Mongo")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param username the username of the login
+     * @return the credentials, or null if the user doesn't exist
+     */
+    public Credentials get(String username) {
+        return cache.get(username, key -> lookups.record(() ->
+                repository.findCredentialsByUsername(key).map(UserCredentialsCache::toCredentials).orElse(null)));
+    }
+
+    /**
+     * Same as {@link #get(String)} without blocking, for the reactive stack
+     *
+     * @param username the username of the login
+     * @return the credentials, empty if the user doesn't exist
+     */
+    public Mono<Credentials> getReactive(String username) {
+        Credentials cached = cache.getIfPresent(username);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.defer(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    return reactiveRepository.findCredentialsByUsername(username)
+                            .doFinally(signal -> sample.stop(lookups));
+                })
+                .map(UserCredentialsCache::toCredentials)
+                .doOnNext(credentials -> cache.put(username, credentials));
+    }
+
+    /**
+     * Forgets a user, the next login reads it from Mongo again
+     *
+     * @param username the username of the changed user
+     */
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    /**
+     * Forgets every user, when a change can't be traced back to a username
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    private static Credentials toCredentials(UserCredentials found) {
+        return new Credentials(found.getUsername(), found.getPassword(),
+                found.getRoles() == null ? List.of() : List.copyOf(found.getRoles()));
+    }
+}
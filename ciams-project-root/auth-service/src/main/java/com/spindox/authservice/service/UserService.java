@@ -1,42 +1,156 @@
 package com.spindox.authservice.service;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
 import com.spindox.authservice.dto.UserDto;
-import com.spindox.authservice.mapper.UserMapper;
+import com.spindox.authservice.dto.UserProvisioningErrorDto;
+import com.spindox.authservice.dto.UserProvisioningResultDto;
 import com.spindox.authservice.model.User;
 import com.spindox.authservice.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Creates the users. The uniqueness of the usernames is left to the unique index of the User collection:
+ * a signup is one insert, two concurrent signups with the same username can't both succeed
+ */
+@Slf4j
 @Service
-@Transactional(readOnly = true)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserService {
 
+    private static final String NOT_PROVISIONED = "Not provisioned, too many password checks in progress, retry later";
+
     @Autowired
     private UserRepository repository;
 
     @Autowired
-    private PasswordEncoder encoder;
+    private MongoTemplate mongoTemplate;
 
     @Autowired
-    private UserMapper mapper;
+    private PasswordHasher passwordHasher;
 
-    @Transactional
-    public void saveUser(UserDto userDto) throws Exception {
-        String username = mapper.FromDto(userDto).getUsername();
-        Optional<User> existingUser = repository.findByUsername(username);
-        if (existingUser.isPresent()) {
-            throw new Exception(String.format("User with the email address '%s' already exists.", username));
-        }
+    // roles of the users signing up, the roles sent with a signup are ignored
+    @Value("${auth.users.signup-roles:USER}")
+    private List<String> signupRoles;
+
+    @Value("${auth.users.bulk.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${auth.users.bulk.max-users:1000}")
+    private int maxUsers;
 
-        String hashedPassword = encoder.encode(userDto.getPassword());
+    /**
+     * Self-signup, open to anyone: the user gets the signup roles whatever the request says,
+     * the other roles are given by an admin through the bulk provisioning
+     *
+     * @param userDto the new user, with its password in clear, its roles are replaced by the signup roles
+     * @throws DuplicateKeyException if the username is taken
+     */
+    public void saveUser(UserDto userDto) {
+        userDto.setRoles(new ArrayList<>(signupRoles));
+        String hashedPassword = passwordHasher.encode(userDto.getPassword());
         User user = new User(userDto.getUsername(), userDto.getRoles(), hashedPassword);
-        repository.save(user);
+        try {
+            repository.insert(user);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateKeyException(String.format("User with the email address '%s' already exists.", userDto.getUsername()), e);
+        }
+    }
+
+    /**
+     * Creates many users, chunk by chunk. The passwords of a chunk are hashed in parallel,
+     * then the chunk is written with one unordered bulk insert: a taken username
+     * doesn't stop the other inserts and is reported as an error of its position.
+     * When the hashing pool is saturated the provisioning stops: the chunks already inserted stay,
+     * the users left are reported as errors of their positions, to be sent again later
+     *
+     * @param userDtos the new users, with their passwords in clear
+     * @return the number of users inserted and the errors by position
+     * @throws BadRequestException if there are more users than allowed in a request
+     */
+    public UserProvisioningResultDto provisionUsers(List<UserDto> userDtos) throws BadRequestException {
+        log.info("Inside the service, provisionUsers method");
+        if (userDtos.size() > maxUsers) {
+            throw new BadRequestException("At most " + maxUsers + " users can be provisioned per request");
+        }
+        UserProvisioningResultDto result = new UserProvisioningResultDto();
+        result.setReceived(userDtos.size());
+        for (int from = 0; from < userDtos.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, userDtos.size());
+            if (!provisionChunk(userDtos, from, to, result)) {
+                log.warn("Bulk provisioning stopped at user {} out of {}, hashing pool saturated", from, userDtos.size());
+                for (int i = to; i < userDtos.size(); i++) {
+                    result.getErrors().add(new UserProvisioningErrorDto(i, userDtos.get(i).getUsername(), NOT_PROVISIONED));
+                }
+                break;
+            }
+        }
+        log.info("{} users provisioned out of {}", result.getInserted(), result.getReceived());
+        return result;
     }
 
+    // false when the chunk couldn't be hashed, its users are reported as not provisioned
+    private boolean provisionChunk(List<UserDto> userDtos, int from, int to, UserProvisioningResultDto result) {
+        // positions in the request of the users sent to the bulk insert
+        List<Integer> indexes = new ArrayList<>();
+        List<String> passwords = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            UserDto userDto = userDtos.get(i);
+            if (isBlank(userDto.getUsername()) || isBlank(userDto.getPassword())) {
+                result.getErrors().add(new UserProvisioningErrorDto(i, userDto.getUsername(), "Username and password are required"));
+            } else {
+                indexes.add(i);
+                passwords.add(userDto.getPassword());
+            }
+        }
+        if (indexes.isEmpty()) {
+            return true;
+        }
+        List<String> hashes;
+        try {
+            hashes = passwordHasher.encodeAll(passwords);
+        } catch (RejectedExecutionException e) {
+            for (int index : indexes) {
+                result.getErrors().add(new UserProvisioningErrorDto(index, userDtos.get(index).getUsername(), NOT_PROVISIONED));
+            }
+            return false;
+        }
+        List<User> users = new ArrayList<>(indexes.size());
+        for (int i = 0; i < indexes.size(); i++) {
+            UserDto userDto = userDtos.get(indexes.get(i));
+            users.add(new User(userDto.getUsername(), userDto.getRoles(), hashes.get(i)));
+        }
 
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        bulk.insert(users);
+        try {
+            result.setInserted(result.getInserted() + bulk.execute().getInsertedCount());
+        } catch (BulkOperationException e) {
+            result.setInserted(result.getInserted() + e.getResult().getInsertedCount());
+            for (BulkWriteError error : e.getErrors()) {
+                int index = indexes.get(error.getIndex());
+                String message = ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                        ? "Username already exists" : error.getMessage();
+                result.getErrors().add(new UserProvisioningErrorDto(index, userDtos.get(index).getUsername(), message));
+            }
+        }
+        return true;
+    }
 
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 }
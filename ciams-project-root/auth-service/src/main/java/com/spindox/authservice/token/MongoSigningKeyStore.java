@@ -0,0 +1,36 @@
+package com.spindox.authservice.token;
+
+import com.spindox.authservice.model.StoredSigningKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class MongoSigningKeyStore implements SigningKeyStore {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<StoredSigningKey> findAll() {
+        return mongoTemplate.find(new Query().with(Sort.by("activeFrom")), StoredSigningKey.class);
+    }
+
+    @Override
+    public void insert(StoredSigningKey key) {
+        mongoTemplate.insert(key);
+    }
+
+    @Override
+    public void delete(Collection<String> kids) {
+        mongoTemplate.remove(Query.query(Criteria.where("id").in(kids)), StoredSigningKey.class);
+    }
+}
@@ -0,0 +1,38 @@
+package com.spindox.authservice.token;
+
+import com.spindox.authservice.model.StoredSigningKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+// the few keys are read by the scheduler and the hashing threads, never by the event loop
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveMongoSigningKeyStore implements SigningKeyStore {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public List<StoredSigningKey> findAll() {
+        return reactiveMongoTemplate.find(new Query().with(Sort.by("activeFrom")), StoredSigningKey.class)
+                .collectList().block();
+    }
+
+    @Override
+    public void insert(StoredSigningKey key) {
+        reactiveMongoTemplate.insert(key).block();
+    }
+
+    @Override
+    public void delete(Collection<String> kids) {
+        reactiveMongoTemplate.remove(Query.query(Criteria.where("id").in(kids)), StoredSigningKey.class).block();
+    }
+}
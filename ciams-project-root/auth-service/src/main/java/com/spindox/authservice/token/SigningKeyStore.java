@@ -0,0 +1,29 @@
+package com.spindox.authservice.token;
+
+import com.spindox.authservice.model.StoredSigningKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The signing keys shared by the replicas of the auth service, each stack reads them with its own Mongo driver.
+ * The calls block, they are made off the event loop
+ */
+public interface SigningKeyStore {
+
+    /**
+     * @return every stored key, in the order of their activation
+     */
+    List<StoredSigningKey> findAll();
+
+    /**
+     * @param key the new key
+     * @throws org.springframework.dao.DuplicateKeyException if another replica added a key activated at the same time
+     */
+    void insert(StoredSigningKey key);
+
+    /**
+     * @param kids the key ids of the keys whose tokens have expired
+     */
+    void delete(Collection<String> kids);
+}
@@ -0,0 +1,247 @@
+package com.spindox.authservice.token;
+
+import com.spindox.authservice.model.StoredSigningKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RSA keys signing the access tokens, published as a JSON Web Key Set.
+ * The keys are stored in Mongo through the {@link SigningKeyStore}, so every replica signs with the same active key
+ * and publishes the same key set, and a restart keeps the tokens already issued valid.
+ * Every key has the time it becomes active: the next key, stored one rotation before it signs anything,
+ * the active key signing the new tokens and the retired keys, kept until the last token they signed has expired.
+ * The replicas read the keys again on the refresh interval and add the next key when it is missing,
+ * the unique activation time lets a single replica add it
+ */
+@Slf4j
+@Component
+public class SigningKeys {
+
+    /**
+     * A key pair and its key id, the "kid" of the JWT header
+     */
+    public record SigningKey(String kid, KeyPair keyPair) {
+    }
+
+    private record Stored(SigningKey key, Instant activeFrom) {
+    }
+
+    private final SigningKeyStore store;
+    private final int keySize;
+    private final Duration rotation;
+    private final Duration retention;
+
+    // the stored keys in the order of their activation, empty before the first read
+    private volatile List<Stored> keys = List.of();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SigningKeys(SigningKeyStore store,
+                       @Value("${auth.token.key-size:2048}") int keySize,
+                       @Value("${auth.token.key-rotation:24h}") Duration rotation,
+                       @Value("${auth.token.ttl:15m}") Duration ttl,
+                       @Value("${auth.token.clock-skew:1m}") Duration clockSkew) {
+        this.store = store;
+        this.keySize = keySize;
+        this.rotation = rotation;
+        this.retention = ttl.plus(clockSkew);
+    }
+
+    /**
+     * @return the key signing the new tokens
+     */
+    public SigningKey active() {
+        Instant now = Instant.now();
+        List<Stored> current = loaded();
+        SigningKey active = current.get(0).key();
+        for (Stored key : current) {
+            if (!key.activeFrom().isAfter(now)) {
+                active = key.key();
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Key verifying the tokens signed with a key id, among the published ones
+     *
+     * @param kid the key id of the token header
+     * @return the public key, or null if the key is unknown or its tokens have expired
+     */
+    public PublicKey publicKey(String kid) {
+        return published().stream()
+                .filter(key -> key.kid().equals(kid))
+                .map(key -> key.keyPair().getPublic())
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * The public keys in the JWK Set format of RFC 7517
+     *
+     * @return the "keys" member with every published key
+     */
+    public Map<String, Object> jwkSet() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        published().forEach(key -> jwks.add(jwk(key)));
+        return Map.of("keys", jwks);
+    }
+
+    /**
+     * Reads the keys again, adds the next key when it is missing and deletes the keys whose tokens have expired.
+     * When Mongo can't be reached the known keys are kept
+     */
+    @Scheduled(fixedDelayString = "${auth.token.key-refresh:1m}", initialDelayString = "${auth.token.key-refresh:1m}")
+    public void refresh() {
+        try {
+            load();
+        } catch (DataAccessException e) {
+            log.warn("Signing keys can't be read, {} known keys kept: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    // the first use reads the keys, the callers are off the event loop
+    private List<Stored> loaded() {
+        List<Stored> current = keys;
+        if (current.isEmpty()) {
+            load();
+            current = keys;
+        }
+        return current;
+    }
+
+    // the next keys, the active one and the retired ones whose tokens may not have expired yet
+    private List<SigningKey> published() {
+        Instant now = Instant.now();
+        List<Stored> current = loaded();
+        List<SigningKey> published = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            if (i + 1 == current.size() || current.get(i + 1).activeFrom().plus(retention).isAfter(now)) {
+                published.add(current.get(i).key());
+            }
+        }
+        return published;
+    }
+
+    private void load() {
+        lock.lock();
+        try {
+            Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            List<StoredSigningKey> stored = store.findAll();
+            if (stored.isEmpty()) {
+                add(now);
+                add(now.plus(rotation));
+                stored = store.findAll();
+            } else if (!stored.get(stored.size() - 1).getActiveFrom().isAfter(now)) {
+                // the next key is one rotation after the active one, the same on every replica.
+                // After a long stop it is one rotation from now, to be published before it signs
+                Instant next = stored.get(stored.size() - 1).getActiveFrom().plus(rotation);
+                add(next.isAfter(now) ? next : now.plus(rotation));
+                stored = store.findAll();
+            }
+            List<String> expired = new ArrayList<>();
+            for (int i = 0; i + 1 < stored.size(); i++) {
+                if (!stored.get(i + 1).getActiveFrom().plus(retention).isAfter(now)) {
+                    expired.add(stored.get(i).getId());
+                }
+            }
+            if (!expired.isEmpty()) {
+                store.delete(expired);
+                log.info("Signing keys {} deleted, their tokens have expired", expired);
+            }
+            List<Stored> current = new ArrayList<>();
+            for (StoredSigningKey key : stored) {
+                if (!expired.contains(key.getId())) {
+                    current.add(new Stored(new SigningKey(key.getId(), keyPair(key)), key.getActiveFrom()));
+                }
+            }
+            if (current.isEmpty()) {
+                throw new IllegalStateException("No signing key stored");
+            }
+            keys = List.copyOf(current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(Instant activeFrom) {
+        SigningKey key = generate();
+        Base64.Encoder encoder = Base64.getEncoder();
+        try {
+            store.insert(new StoredSigningKey(key.kid(), activeFrom,
+                    encoder.encodeToString(key.keyPair().getPrivate().getEncoded()),
+                    encoder.encodeToString(key.keyPair().getPublic().getEncoded())));
+            log.info("Signing key {} stored, active from {}", key.kid(), activeFrom);
+        } catch (DuplicateKeyException e) {
+            log.debug("Signing key active from {} already stored by another replica", activeFrom);
+        }
+    }
+
+    private Map<String, Object> jwk(SigningKey key) {
+        RSAPublicKey publicKey = (RSAPublicKey) key.keyPair().getPublic();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "RSA");
+        jwk.put("kid", key.kid());
+        jwk.put("use", "sig");
+        jwk.put("alg", "RS256");
+        jwk.put("n", encoder.encodeToString(unsigned(publicKey.getModulus().toByteArray())));
+        jwk.put("e", encoder.encodeToString(unsigned(publicKey.getPublicExponent().toByteArray())));
+        return jwk;
+    }
+
+    // the JWK integers are unsigned big-endian, without the sign byte of BigInteger
+    private static byte[] unsigned(byte[] bytes) {
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            return unsigned;
+        }
+        return bytes;
+    }
+
+    private static KeyPair keyPair(StoredSigningKey key) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            return new KeyPair(keyFactory.generatePublic(new X509EncodedKeySpec(decoder.decode(key.getPublicKey()))),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decoder.decode(key.getPrivateKey()))));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Signing key " + key.getId() + " can't be read", e);
+        }
+    }
+
+    private SigningKey generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(keySize);
+            return new SigningKey(UUID.randomUUID().toString(), generator.generateKeyPair());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("RSA keys not supported by the runtime", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.spindox.authservice.token;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spindox.authservice.dto.MessageResponseDTO;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Authenticates the requests to the auth service itself with the tokens it issued,
+ * e.g. the bulk provisioning reserved to the administrators.
+ * The keys are the ones of {@link SigningKeys}, nothing is read from the user store
+ */
+@Slf4j
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final SigningKeys signingKeys;
+    private final ObjectMapper objectMapper;
+    private final String issuer;
+    private final long clockSkewSeconds;
+
+    public TokenAuthenticationFilter(SigningKeys signingKeys, ObjectMapper objectMapper, String issuer, Duration clockSkew) {
+        this.signingKeys = signingKeys;
+        this.objectMapper = objectMapper;
+        this.issuer = issuer;
+        this.clockSkewSeconds = clockSkew.toSeconds();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Authentication authentication;
+        try {
+            authentication = authenticate(authorization.substring(BEARER.length()).trim());
+        } catch (BadCredentialsException e) {
+            log.info("TokenAuthenticationFilter - invalid token: " + e.getMessage());
+            SecurityContextHolder.clearContext();
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new MessageResponseDTO(e.getMessage(), HttpStatus.UNAUTHORIZED.value()));
+            return;
+        }
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+        filterChain.doFilter(request, response);
+    }
+
+    private Authentication authenticate(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        JsonNode header = decode(parts[0]);
+        if (!"RS256".equals(header.path("alg").asText())) {
+            throw new BadCredentialsException("Unsupported token algorithm " + header.path("alg").asText());
+        }
+        PublicKey key = signingKeys.publicKey(header.path("kid").asText());
+        if (key == null || !verify(parts, key)) {
+            throw new BadCredentialsException("Invalid token signature");
+        }
+
+        JsonNode claims = decode(parts[1]);
+        long now = System.currentTimeMillis() / 1000;
+        if (!claims.path("exp").canConvertToLong() || now > claims.get("exp").asLong() + clockSkewSeconds) {
+            throw new BadCredentialsException("Expired token");
+        }
+        if (!issuer.equals(claims.path("iss").asText()) || claims.path("sub").asText().isEmpty()) {
+            throw new BadCredentialsException("Token not issued by " + issuer);
+        }
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        for (JsonNode role : claims.path("roles")) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role.asText()));
+        }
+        return UsernamePasswordAuthenticationToken.authenticated(claims.get("sub").asText(), null, authorities);
+    }
+
+    private static boolean verify(String[] parts, PublicKey key) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            return signature.verify(Base64.getUrlDecoder().decode(parts[2]));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private JsonNode decode(String part) {
+        try {
+            return objectMapper.readTree(Base64.getUrlDecoder().decode(part));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed token");
+        }
+    }
+}
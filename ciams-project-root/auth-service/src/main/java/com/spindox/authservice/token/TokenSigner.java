@@ -0,0 +1,87 @@
+package com.spindox.authservice.token;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spindox.authservice.dto.TokenDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signs the access tokens, JWTs signed with RS256 by the active key of {@link SigningKeys}.
+ * Shared by the logins of the servlet and of the reactive stacks, it doesn't read the user store
+ */
+@Component
+public class TokenSigner {
+
+    @Autowired
+    private SigningKeys signingKeys;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${auth.token.issuer:ciams-auth}")
+    private String issuer;
+
+    // the service the tokens are meant for, the verifiers refuse the tokens of another audience
+    @Value("${auth.token.audience:ciams-inventory}")
+    private String audience;
+
+    @Value("${auth.token.ttl:15m}")
+    private Duration ttl;
+
+    /**
+     * Issues a token to a user whose credentials have been checked
+     *
+     * @param username the subject of the token
+     * @param roles    the roles, without the ROLE_ prefix
+     * @return the signed token and its lifetime
+     */
+    public TokenDto sign(String username, List<String> roles) {
+        Instant now = Instant.now();
+        SigningKeys.SigningKey key = signingKeys.active();
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "RS256");
+        header.put("typ", "JWT");
+        header.put("kid", key.kid());
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", issuer);
+        claims.put("sub", username);
+        claims.put("aud", audience);
+        claims.put("roles", roles);
+        claims.put("iat", now.getEpochSecond());
+        claims.put("exp", now.plus(ttl).getEpochSecond());
+
+        String signingInput = encode(header) + "." + encode(claims);
+        return new TokenDto(signingInput + "." + sign(signingInput, key), "Bearer", ttl.toSeconds());
+    }
+
+    private String encode(Map<String, Object> json) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Token can't be serialized", e);
+        }
+    }
+
+    private String sign(String signingInput, SigningKeys.SigningKey key) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key.keyPair().getPrivate());
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Token can't be signed with key " + key.kid(), e);
+        }
+    }
+}
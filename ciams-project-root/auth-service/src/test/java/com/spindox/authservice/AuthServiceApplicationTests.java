@@ -1,13 +1,35 @@
 package com.spindox.authservice;
 
+import com.spindox.authservice.service.ReactiveAuthService;
+import com.spindox.authservice.service.UserService;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 
-@SpringBootTest
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// no Mongo is needed to start, the indexes are created by a runner left out here
+@SpringBootTest(properties = "auth.users.ensure-indexes=false")
 class AuthServiceApplicationTests {
 
+    @Autowired
+    private ApplicationContext context;
+
     @Test
     void contextLoads() {
     }
 
+    // the servlet stack starts the blocking Mongo client only
+    @Test
+    void onlyTheBlockingDriverIsStarted() {
+        assertEquals(1, context.getBeanNamesForType(com.mongodb.client.MongoClient.class).length);
+        assertEquals(1, context.getBeanNamesForType(MongoTemplate.class).length);
+        assertEquals(1, context.getBeanNamesForType(UserService.class).length);
+        assertEquals(0, context.getBeanNamesForType(com.mongodb.reactivestreams.client.MongoClient.class).length);
+        assertEquals(0, context.getBeanNamesForType(ReactiveMongoTemplate.class).length);
+        assertEquals(0, context.getBeanNamesForType(ReactiveAuthService.class).length);
+    }
 }
@@ -0,0 +1,30 @@
+package com.spindox.authservice;
+
+import com.spindox.authservice.service.ReactiveAuthService;
+import com.spindox.authservice.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// the reactive stack starts the reactive Mongo client only
+@SpringBootTest(properties = {"spring.main.web-application-type=reactive", "auth.users.ensure-indexes=false"})
+class ReactiveAuthServiceApplicationTests {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void onlyTheReactiveDriverIsStarted() {
+        assertEquals(1, context.getBeanNamesForType(com.mongodb.reactivestreams.client.MongoClient.class).length);
+        assertEquals(1, context.getBeanNamesForType(ReactiveMongoTemplate.class).length);
+        assertEquals(1, context.getBeanNamesForType(ReactiveAuthService.class).length);
+        assertEquals(0, context.getBeanNamesForType(com.mongodb.client.MongoClient.class).length);
+        assertEquals(0, context.getBeanNamesForType(MongoTemplate.class).length);
+        assertEquals(0, context.getBeanNamesForType(UserService.class).length);
+    }
+}
@@ -0,0 +1,138 @@
+package com.spindox.authservice.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sustained signups and logins per second of running auth-services, to compare the servlet and the reactive stacks.
+ * Start the same build twice against the same Mongo, e.g.
+ * <pre>
+ *   java -jar auth-service.jar --server.port=8081
+ *   AUTH_WEB_STACK=reactive java -jar auth-service.jar --server.port=8082
+ *   gradle benchmark -PbaseUrls=http://localhost:8081,http://localhost:8082 -Pconcurrency=64 -Pseconds=30
+ * </pre>
+ * Every target gets a signup phase, then a login phase with the users it created, each one for the given time
+ * with a fixed number of clients sending requests back to back. The throughput counts the 2xx responses only,
+ * the 503 of the saturated hashing pool are reported apart
+ */
+public final class AuthBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    private AuthBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> baseUrls = Arrays.asList((args.length > 0 ? args[0] : "http://localhost:8081").split(","));
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Duration phase = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        List<String> results = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            String prefix = "bench-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+            AtomicInteger created = new AtomicInteger();
+            Phase signups = run(phase, concurrency, () -> {
+                int n = created.getAndIncrement();
+                return send(client, baseUrl + "/signup",
+                        "{\"username\":\"" + prefix + n + "\",\"password\":\"" + PASSWORD + "\"}");
+            });
+            int users = Math.max(1, created.get());
+            AtomicInteger next = new AtomicInteger();
+            Phase logins = run(phase, concurrency, () -> send(client, baseUrl + "/token",
+                    "{\"username\":\"" + prefix + Math.floorMod(next.getAndIncrement(), users) + "\",\"password\":\"" + PASSWORD + "\"}"));
+            results.add(signups.describe(baseUrl + " signups", phase));
+            results.add(logins.describe(baseUrl + " logins", phase));
+        }
+        System.out.printf("%-45s %10s %10s %10s %8s %8s %8s%n", "target", "ok/s", "p50 ms", "p99 ms", "2xx", "503", "other");
+        results.forEach(System.out::println);
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        int send() throws Exception;
+    }
+
+    private static int send(HttpClient client, String url, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static Phase run(Duration duration, int concurrency, Request request) throws InterruptedException {
+        Phase phase = new Phase();
+        long end = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = request.send();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    phase.record(status, System.nanoTime() - start);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        return phase;
+    }
+
+    private static final class Phase {
+
+        // latencies of the 2xx responses by millisecond
+        private final Map<Long, LongAdder> latencies = new ConcurrentHashMap<>();
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder unavailable = new LongAdder();
+        private final LongAdder other = new LongAdder();
+
+        void record(int status, long nanos) {
+            if (status >= 200 && status < 300) {
+                ok.increment();
+                latencies.computeIfAbsent(TimeUnit.NANOSECONDS.toMillis(nanos), key -> new LongAdder()).increment();
+            } else if (status == 503) {
+                unavailable.increment();
+            } else {
+                other.increment();
+            }
+        }
+
+        String describe(String target, Duration duration) {
+            return String.format("%-45s %10.1f %10d %10d %8d %8d %8d", target, ok.sum() / (double) duration.toSeconds(),
+                    percentile(0.50), percentile(0.99), ok.sum(), unavailable.sum(), other.sum());
+        }
+
+        private long percentile(double percentile) {
+            long rank = (long) Math.ceil(ok.sum() * percentile);
+            long seen = 0;
+            for (long millis : latencies.keySet().stream().sorted().toList()) {
+                seen += latencies.get(millis).sum();
+                if (seen >= rank) {
+                    return millis;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.spindox.authservice.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the calibrated cost stays between the minimum cost and the highest one of BCrypt
+ */
+class BCryptCalibrationTests {
+
+    @Test
+    void strengthNeverGoesBelowTheMinimum() {
+        assertEquals(4, BCryptCalibration.strengthFor(Duration.ZERO, 4));
+        assertEquals(6, BCryptCalibration.strengthFor(Duration.ofNanos(1), 6));
+    }
+
+    @Test
+    void strengthNeverGoesAboveTheHighestCost() {
+        // the estimates double at every step, nothing is hashed at the chosen cost
+        assertEquals(31, BCryptCalibration.strengthFor(Duration.ofNanos(Long.MAX_VALUE), 4));
+    }
+
+    @Test
+    void strengthGrowsWithTheTarget() {
+        int fast = BCryptCalibration.strengthFor(Duration.ofMillis(1), 4);
+        int slow = BCryptCalibration.strengthFor(Duration.ofSeconds(1), 4);
+        assertTrue(fast >= 4 && slow <= 31);
+        assertTrue(slow >= fast + 5, "a target 1000 times longer is at least 5 steps higher");
+    }
+}
@@ -0,0 +1,186 @@
+package com.spindox.authservice.controller;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.spindox.authservice.config.GlobalExceptionHandler;
+import com.spindox.authservice.model.User;
+import com.spindox.authservice.repository.UserRepository;
+import com.spindox.authservice.service.PasswordHasher;
+import com.spindox.authservice.service.UserService;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the signups refused because of a taken username or of the saturated hashing pool,
+ * and the errors reported by position by the bulk provisioning, on a Mongo replaced by mocks
+ */
+class UserControllerTests {
+
+    // the usernames refused by the unique index
+    private static final Set<String> TAKEN = Set.of("taken@example.com");
+
+    private UserRepository userRepository;
+
+    private PasswordHasher passwordHasher;
+
+    private MockMvc mockMvc;
+
+    // the users of the bulk insert being prepared
+    private final List<User> pending = new ArrayList<>();
+
+    @BeforeEach
+    void createController() {
+        userRepository = mock(UserRepository.class);
+        passwordHasher = mock(PasswordHasher.class);
+        when(passwordHasher.encode(any())).thenAnswer(call -> "hash-" + call.getArgument(0));
+        when(passwordHasher.encodeAll(anyList())).thenAnswer(call -> {
+            List<String> passwords = call.getArgument(0);
+            return passwords.stream().map(password -> "hash-" + password).toList();
+        });
+
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(bulk.insert(anyList())).thenAnswer(call -> {
+            pending.clear();
+            pending.addAll(call.getArgument(0));
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(call -> insert());
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(User.class))).thenReturn(bulk);
+
+        UserService userService = new UserService();
+        ReflectionTestUtils.setField(userService, "repository", userRepository);
+        ReflectionTestUtils.setField(userService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(userService, "passwordHasher", passwordHasher);
+        ReflectionTestUtils.setField(userService, "signupRoles", List.of("USER"));
+        ReflectionTestUtils.setField(userService, "chunkSize", 2);
+        ReflectionTestUtils.setField(userService, "maxUsers", 5);
+        UserController controller = new UserController();
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        GlobalExceptionHandler exceptionHandler = new GlobalExceptionHandler();
+        ReflectionTestUtils.setField(exceptionHandler, "retryAfter", Duration.ofSeconds(2));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(exceptionHandler).build();
+    }
+
+    @Test
+    void signupWithATakenUsernameIsAConflict() throws Exception {
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        mockMvc.perform(post("/signup").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"taken@example.com\",\"password\":\"secret\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409))
+                .andExpect(jsonPath("$.message").value("User with the email address 'taken@example.com' already exists."));
+    }
+
+    @Test
+    void signupIsUnavailableWhenTheHashingPoolIsSaturated() throws Exception {
+        when(passwordHasher.encode(any())).thenThrow(new RejectedExecutionException("Too many password checks in progress, retry later"));
+
+        mockMvc.perform(post("/signup").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"new@example.com\",\"password\":\"secret\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"))
+                .andExpect(jsonPath("$.message").value("Too many password checks in progress, retry later"));
+    }
+
+    @Test
+    void bulkReportsTheRefusedUsersByPosition() throws Exception {
+        mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content(users("a@example.com", "", "taken@example.com", "b@example.com", "c@example.com")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(5))
+                .andExpect(jsonPath("$.inserted").value(3))
+                .andExpect(jsonPath("$.errors.length()").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[0].message").value("Username and password are required"))
+                // the position in the request, not in the chunk
+                .andExpect(jsonPath("$.errors[1].index").value(2))
+                .andExpect(jsonPath("$.errors[1].username").value("taken@example.com"))
+                .andExpect(jsonPath("$.errors[1].message").value("Username already exists"));
+    }
+
+    @Test
+    void bulkKeepsTheChunksInsertedBeforeTheHashingPoolIsSaturated() throws Exception {
+        AtomicInteger chunks = new AtomicInteger();
+        when(passwordHasher.encodeAll(anyList())).thenAnswer(call -> {
+            if (chunks.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("Too many password checks in progress, retry later");
+            }
+            List<String> passwords = call.getArgument(0);
+            return passwords.stream().map(password -> "hash-" + password).toList();
+        });
+
+        mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content(users("a@example.com", "b@example.com", "c@example.com", "d@example.com", "e@example.com")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(2))
+                // the rejected chunk and the one after it, to be sent again
+                .andExpect(jsonPath("$.errors[*].index").value(contains(2, 3, 4)))
+                .andExpect(jsonPath("$.errors[2].username").value("e@example.com"))
+                .andExpect(jsonPath("$.errors[2].message").value(startsWith("Not provisioned")));
+    }
+
+    @Test
+    void bulkRefusesTooManyUsers() throws Exception {
+        mockMvc.perform(post("/users/bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content(users("a", "b", "c", "d", "e", "f")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("At most 5 users can be provisioned per request"));
+    }
+
+    // inserts the pending users the unique index lets through, like an unordered bulk insert
+    private BulkWriteResult insert() {
+        List<BulkWriteError> errors = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            if (TAKEN.contains(pending.get(i).getUsername())) {
+                errors.add(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), i));
+            }
+        }
+        BulkWriteResult result = BulkWriteResult.acknowledged(pending.size() - errors.size(), 0, 0, 0, List.of(), List.of());
+        if (!errors.isEmpty()) {
+            throw new BulkOperationException("Bulk write failed",
+                    new MongoBulkWriteException(result, errors, null, new ServerAddress(), Set.of()));
+        }
+        return result;
+    }
+
+    private static String users(String... usernames) {
+        List<String> users = new ArrayList<>();
+        for (String username : usernames) {
+            users.add("{\"username\":\"" + username + "\",\"password\":\"secret\"}");
+        }
+        return "[" + String.join(",", users) + "]";
+    }
+}
@@ -0,0 +1,129 @@
+package com.spindox.authservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the hashes beyond the queue of the pool and the ones waiting longer than the max wait
+ * are rejected, the default size of the pool and the upgrade of the hashes made with a lower cost
+ */
+class PasswordHasherTests {
+
+    // holds the hashes of the pool until released
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void stopHasher() {
+        release.countDown();
+        if (hasher != null) {
+            hasher.stop();
+        }
+    }
+
+    @Test
+    void hashesBeyondTheQueueAreRejected() throws Exception {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.encode(any())).thenAnswer(call -> {
+            release.await();
+            return "hash-" + call.getArgument(0);
+        });
+        hasher = start(encoder, Duration.ofSeconds(5));
+
+        // one hash on the single thread, one in the queue
+        List<String> stored = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        hasher.encodeLater("first", hash -> {
+            stored.add(hash);
+            done.countDown();
+        });
+        hasher.encodeLater("second", hash -> {
+            stored.add(hash);
+            done.countDown();
+        });
+
+        RejectedExecutionException rejected = assertThrows(RejectedExecutionException.class, () -> hasher.encode("third"));
+        assertEquals("Too many password checks in progress, retry later", rejected.getMessage());
+        assertThrows(RejectedExecutionException.class, () -> hasher.encodeReactive("third").block());
+        assertThrows(RejectedExecutionException.class, () -> hasher.encodeAll(List.of("third")));
+        // an upgrade is given up silently, it is tried again at the next login
+        hasher.encodeLater("fourth", stored::add);
+
+        // once the pool has room again the hashes are accepted
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("hash-first", "hash-second"), stored);
+        assertEquals("hash-fifth", hasher.encode("fifth"));
+    }
+
+    @Test
+    void hashesWaitingLongerThanTheMaxWaitAreRejected() {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.matches(any(), any())).thenAnswer(call -> release.await(10, TimeUnit.SECONDS));
+        hasher = start(encoder, Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        RejectedExecutionException rejected = assertThrows(RejectedExecutionException.class, () -> hasher.matches("password", "hash"));
+        assertTrue(rejected.getMessage().startsWith("Password check not completed within"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        // the cancelled check frees the thread, the reactive one waits the same time at most
+        assertThrows(RejectedExecutionException.class, () -> hasher.matchesReactive("password", "hash").block());
+    }
+
+    @Test
+    void hashesOfALowerCostAreUpgraded() throws Exception {
+        hasher = start(new BCryptPasswordEncoder(5), Duration.ofSeconds(5));
+        String oldHash = new BCryptPasswordEncoder(4).encode("password");
+
+        assertTrue(hasher.needsUpgrade(oldHash));
+        assertFalse(hasher.needsUpgrade(hasher.encode("password")));
+
+        CountDownLatch upgraded = new CountDownLatch(1);
+        List<String> stored = new CopyOnWriteArrayList<>();
+        hasher.encodeLater("password", newHash -> {
+            stored.add(newHash);
+            upgraded.countDown();
+        });
+        assertTrue(upgraded.await(10, TimeUnit.SECONDS));
+        assertFalse(hasher.needsUpgrade(stored.get(0)));
+        assertTrue(hasher.matches("password", stored.get(0)));
+    }
+
+    @Test
+    void defaultPoolLeavesACoreToTheOtherRequests() {
+        assertEquals(7, PasswordHasher.poolSize(0, 8));
+        assertEquals(1, PasswordHasher.poolSize(0, 2));
+        assertEquals(1, PasswordHasher.poolSize(0, 1));
+        assertEquals(8, PasswordHasher.poolSize(8, 8));
+    }
+
+    // one thread and one queued hash at most
+    private static PasswordHasher start(PasswordEncoder encoder, Duration maxWait) {
+        PasswordHasher hasher = new PasswordHasher();
+        ReflectionTestUtils.setField(hasher, "encoder", encoder);
+        ReflectionTestUtils.setField(hasher, "threads", 1);
+        ReflectionTestUtils.setField(hasher, "queueCapacity", 1);
+        ReflectionTestUtils.setField(hasher, "maxWait", maxWait);
+        hasher.start();
+        return hasher;
+    }
+}
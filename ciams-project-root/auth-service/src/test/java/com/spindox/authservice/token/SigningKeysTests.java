@@ -0,0 +1,118 @@
+package com.spindox.authservice.token;
+
+import com.spindox.authservice.model.StoredSigningKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the replicas sign with and publish the same keys, and the rotation of the keys they share,
+ * on a Mongo replaced by a map with the unique index on the activation time
+ */
+class SigningKeysTests {
+
+    private static final Duration ROTATION = Duration.ofHours(24);
+
+    private final InMemoryStore store = new InMemoryStore();
+
+    @Test
+    void replicasShareTheKeys() {
+        SigningKeys first = signingKeys();
+        SigningKeys second = signingKeys();
+
+        String active = first.active().kid();
+        assertEquals(active, second.active().kid());
+        // the active key and the next one
+        assertEquals(2, store.keys.size());
+        assertEquals(kids(first), kids(second));
+        assertEquals(first.active().keyPair().getPublic(), second.publicKey(active));
+    }
+
+    @Test
+    void replicasRotateToTheSameKey() {
+        SigningKeys first = signingKeys();
+        SigningKeys second = signingKeys();
+        String retired = first.active().kid();
+        second.active();
+
+        // a rotation later the next key is active, both replicas add the one after it at the same time
+        store.shift(ROTATION);
+        CompletableFuture.allOf(CompletableFuture.runAsync(first::refresh), CompletableFuture.runAsync(second::refresh)).join();
+
+        assertEquals(3, store.keys.size());
+        assertNotEquals(retired, first.active().kid());
+        assertEquals(first.active().kid(), second.active().kid());
+        assertEquals(kids(first), kids(second));
+        // the tokens signed with the retired key are still valid
+        assertEquals(3, kids(first).size());
+        assertEquals(retired, kids(first).get(0));
+    }
+
+    @Test
+    void keysAreDeletedOnceTheirTokensHaveExpired() {
+        SigningKeys signingKeys = signingKeys();
+        String expired = signingKeys.active().kid();
+
+        // the next key went active a rotation ago, its own next one is missing after the long stop
+        store.shift(ROTATION.multipliedBy(2));
+        signingKeys.refresh();
+
+        assertNull(signingKeys.publicKey(expired));
+        assertEquals(2, store.keys.size());
+        assertEquals(2, kids(signingKeys).size());
+    }
+
+    private SigningKeys signingKeys() {
+        return new SigningKeys(store, 1024, ROTATION, Duration.ofMinutes(15), Duration.ofMinutes(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> kids(SigningKeys signingKeys) {
+        List<Map<String, Object>> jwks = (List<Map<String, Object>>) signingKeys.jwkSet().get("keys");
+        return jwks.stream().map(jwk -> (String) jwk.get("kid")).toList();
+    }
+
+    // the keys by activation time, a second key with the same time is refused like by the unique index
+    private static class InMemoryStore implements SigningKeyStore {
+
+        private final ConcurrentSkipListMap<Instant, StoredSigningKey> keys = new ConcurrentSkipListMap<>();
+
+        @Override
+        public List<StoredSigningKey> findAll() {
+            return List.copyOf(keys.values());
+        }
+
+        @Override
+        public void insert(StoredSigningKey key) {
+            if (keys.putIfAbsent(key.getActiveFrom(), key) != null) {
+                throw new DuplicateKeyException("E11000 duplicate key error");
+            }
+        }
+
+        @Override
+        public void delete(Collection<String> kids) {
+            keys.values().removeIf(key -> kids.contains(key.getId()));
+        }
+
+        // lets the time pass, moving every key back
+        void shift(Duration elapsed) {
+            List<StoredSigningKey> shifted = findAll();
+            keys.clear();
+            shifted.forEach(key -> {
+                key.setActiveFrom(key.getActiveFrom().minus(elapsed));
+                keys.put(key.getActiveFrom(), key);
+            });
+        }
+    }
+}
@@ -8,6 +8,8 @@ CREATE SCHEMA IF NOT EXISTS inventory
     AUTHORIZATION invuser;
 
 -- Drop tables
+DROP TABLE IF EXISTS inventory.collection_version;
+DROP TABLE IF EXISTS inventory.asset_document;
 DROP TABLE IF EXISTS inventory.asset_licence;
 DROP TABLE IF EXISTS inventory.software_licence;
 DROP TABLE IF EXISTS inventory.asset;
@@ -17,7 +19,8 @@ DROP TABLE IF EXISTS inventory.office;
 -- Create table office
 CREATE TABLE inventory.office (
 	id SERIAL,
-	name VARCHAR(100) NOT NULL
+	name VARCHAR(100) NOT NULL,
+	version BIGINT NOT NULL DEFAULT 0
 );
 
 ALTER TABLE inventory.office ADD CONSTRAINT office_pk PRIMARY KEY (id);
@@ -28,7 +31,8 @@ ALTER TABLE inventory.office ADD CONSTRAINT office_name_unique UNIQUE (name);
 CREATE TABLE inventory.asset_type (
 	id SERIAL,
 	name VARCHAR(100) NOT NULL,
-	description VARCHAR(200)
+	description VARCHAR(200),
+	version BIGINT NOT NULL DEFAULT 0
 );
 
 ALTER TABLE inventory.asset_type ADD CONSTRAINT asset_type_pk PRIMARY KEY (id);
@@ -40,20 +44,27 @@ CREATE TABLE inventory.asset (
 	serial_number VARCHAR(100) NOT NULL,
 	acquisition_date DATE,
 	office_id INTEGER NOT NULL,
-	asset_type_id INTEGER NOT NULL
+	asset_type_id INTEGER NOT NULL,
+	version BIGINT NOT NULL DEFAULT 0
 );
 
 ALTER TABLE inventory.asset ADD CONSTRAINT asset_pk PRIMARY KEY (id);
+-- Asset ids are preallocated by Hibernate in blocks of 50 (pooled optimizer)
+ALTER SEQUENCE inventory.asset_id_seq INCREMENT BY 50;
 ALTER TABLE inventory.asset ADD CONSTRAINT asset_sn_unique UNIQUE (serial_number);
 ALTER TABLE inventory.asset ADD CONSTRAINT asset_office_fk FOREIGN KEY (office_id) REFERENCES inventory.office(id);
 ALTER TABLE inventory.asset ADD CONSTRAINT asset_at_fk FOREIGN KEY (asset_type_id) REFERENCES inventory.asset_type(id);
 
+-- Index used by the keyset pagination ordered by acquisition date
+CREATE INDEX asset_acq_date_idx ON inventory.asset (acquisition_date, id);
+
 
 -- Create table software_license
 CREATE TABLE inventory.software_license (
 	id SERIAL,
 	name VARCHAR(100) NOT NULL,
-	expire_date DATE NOT NULL
+	expire_date DATE NOT NULL,
+	version BIGINT NOT NULL DEFAULT 0
 );
 
 ALTER TABLE inventory.software_license ADD CONSTRAINT software_license_pk PRIMARY KEY (id);
@@ -70,3 +81,35 @@ ALTER TABLE inventory.asset_licence ADD CONSTRAINT al_asset_fk FOREIGN KEY (asse
 ALTER TABLE inventory.asset_licence ADD CONSTRAINT al_licence_fk FOREIGN KEY (licence_id) REFERENCES inventory.software_license(id) ON DELETE CASCADE;
 
 
+-- Create table asset_document, the read model of the assets
+-- Every row holds the JSON served for an asset, with its office, type and licenses,
+-- it is written by the service in the same transaction as the asset
+CREATE TABLE inventory.asset_document (
+	id INTEGER NOT NULL,
+	serial_number VARCHAR(100) NOT NULL,
+	acquisition_date DATE,
+	office_id INTEGER NOT NULL,
+	asset_type_id INTEGER NOT NULL,
+	revision BIGINT NOT NULL DEFAULT 0,
+	document TEXT NOT NULL
+);
+
+ALTER TABLE inventory.asset_document ADD CONSTRAINT asset_document_pk PRIMARY KEY (id);
+ALTER TABLE inventory.asset_document ADD CONSTRAINT asset_document_sn_unique UNIQUE (serial_number);
+
+-- Indexes used by the keyset pagination and by the refresh of the documents of an office or a type
+CREATE INDEX asset_document_acq_date_idx ON inventory.asset_document (acquisition_date, id);
+CREATE INDEX asset_document_office_idx ON inventory.asset_document (office_id);
+CREATE INDEX asset_document_at_idx ON inventory.asset_document (asset_type_id);
+
+
+-- Create table collection_version, the versions of the collections given as ETags by the list endpoints
+-- A row is increased in the transaction of every write of its collection, the replicas read it after the commit
+CREATE TABLE inventory.collection_version (
+	collection VARCHAR(30) NOT NULL,
+	version BIGINT NOT NULL DEFAULT 0
+);
+
+ALTER TABLE inventory.collection_version ADD CONSTRAINT collection_version_pk PRIMARY KEY (collection);
+
+INSERT INTO inventory.collection_version (collection) VALUES ('OFFICE'), ('ASSET_TYPE'), ('SOFTWARE_LICENSE');
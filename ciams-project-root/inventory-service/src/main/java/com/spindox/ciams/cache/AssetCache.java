@@ -0,0 +1,131 @@
+package com.spindox.ciams.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.spindox.ciams.dto.AssetDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the assets indexed both by id and by serial number.
+ * Serial numbers that are not registered are cached as negative entries with a short TTL.
+ * The entries are evicted through the {@link CacheInvalidator}
+ */
+@Slf4j
+@Component
+public class AssetCache {
+
+    private final Cache<Long, AssetDto> assets;
+    private final Cache<String, Optional<Long>> serialNumbers;
+
+    public AssetCache(@Value("${ciams.cache.assets.maximum-size:50000}") long maximumSize,
+                      @Value("${ciams.cache.assets.expire-after-write:1h}") Duration expireAfterWrite,
+                      @Value("${ciams.cache.assets.negative-ttl:30s}") Duration negativeTtl,
+                      MeterRegistry meterRegistry) {
+        assets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        serialNumbers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(Expiry.<String, Optional<Long>>writing((serial, id) -> id.isPresent() ? expireAfterWrite : negativeTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, assets, "assets-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, serialNumbers, "assets-by-serial-number");
+    }
+
+    /**
+     * Finds an asset by id, loading it on a miss
+     *
+     * @param id the pk of the asset
+     * @param loader loads the asset, returns null when it doesn't exist
+     * @return the asset or null when it doesn't exist
+     */
+    public AssetDto getById(Long id, Function<Long, AssetDto> loader) {
+        return assets.get(id, loader);
+    }
+
+    /**
+     * Finds an asset by serial number, loading it on a miss.
+     * An unknown serial number is remembered for the negative TTL
+     *
+     * @param serialNumber the serial number of the asset
+     * @param loader loads the asset by serial number
+     * @return the asset, empty when the serial number is not registered
+     */
+    public Optional<AssetDto> getBySerialNumber(String serialNumber, Function<String, Optional<AssetDto>> loader) {
+        Optional<Long> id = serialNumbers.get(serialNumber, serial -> load(serial, loader));
+        if (id.isEmpty()) {
+            return Optional.empty();
+        }
+        AssetDto asset = assets.getIfPresent(id.get());
+        if (asset != null && serialNumber.equals(asset.getSerialNumber())) {
+            return Optional.of(asset);
+        }
+        // the asset has expired or changed serial number since the serial got indexed
+        Optional<Long> reloaded = load(serialNumber, loader);
+        serialNumbers.put(serialNumber, reloaded);
+        return reloaded.map(assets::getIfPresent);
+    }
+
+    private Optional<Long> load(String serialNumber, Function<String, Optional<AssetDto>> loader) {
+        Optional<AssetDto> asset = loader.apply(serialNumber);
+        asset.ifPresent(dto -> assets.put(dto.getId(), dto));
+        return asset.map(AssetDto::getId);
+    }
+
+    /**
+     * Evicts an asset and the index of its serial number
+     *
+     * @param id the pk of the asset
+     */
+    void evict(Long id) {
+        AssetDto asset = assets.asMap().remove(id);
+        if (asset != null) {
+            serialNumbers.invalidate(asset.getSerialNumber());
+        }
+    }
+
+    /**
+     * Evicts the index of some serial numbers, including the negative entries of unknown serials,
+     * and the cached assets that have one of them
+     *
+     * @param serials the serial numbers
+     */
+    void evictSerialNumbers(Set<String> serials) {
+        serialNumbers.invalidateAll(serials);
+        evictIf(asset -> serials.contains(asset.getSerialNumber()));
+    }
+
+    /**
+     * Evicts the cached assets matching a condition, used when a write can't tell
+     * the affected ids, e.g. an office rename or a move of a whole office
+     *
+     * @param condition selects the assets to evict
+     */
+    void evictIf(Predicate<AssetDto> condition) {
+        int before = assets.asMap().size();
+        assets.asMap().values().removeIf(condition);
+        log.debug("{} cached assets evicted", before - assets.asMap().size());
+    }
+
+    /**
+     * Evicts every asset and serial number
+     */
+    void clear() {
+        assets.invalidateAll();
+        serialNumbers.invalidateAll();
+    }
+}
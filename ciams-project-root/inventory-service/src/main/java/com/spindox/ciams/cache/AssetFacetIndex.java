@@ -0,0 +1,474 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.repository.AssetFacets;
+import com.spindox.ciams.repository.AssetLicenseLink;
+import com.spindox.ciams.repository.AssetRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the asset fields the search filters on: office, asset type, licenses,
+ * acquisition date and serial number. A search is a single pass over columns of the assets ordered by id
+ * that collects the page and counts the assets of every office, asset type and license;
+ * the offices, asset types and licenses are numbered densely so the counts are plain arrays.
+ * The serial number prefix is resolved by the {@link SerialNumberIndex} before the pass.
+ * It is built on the first search, the assets invalidated through the {@link CacheInvalidator}
+ * are reloaded by the next search. The changed assets are patched in place in the columns,
+ * the new and the deleted ones make new columns, built aside and swapped in: the searches only wait
+ * for the patches and the swap, never for the database or a copy of the columns
+ */
+@Slf4j
+@Component
+public class AssetFacetIndex {
+
+    private static final int NONE = -1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int[] NO_LICENSES = new int[0];
+
+    // the office, asset type and licenses are ordinals
+    private record Row(long id, long acquisitionDate, int office, int assetType, int[] licenses) {
+    }
+
+    // the assets in id order as parallel arrays, the licenses of the asset i are licenses[i]
+    private record Columns(long[] ids, long[] acquisitionDates, int[] offices, int[] assetTypes, int[][] licenses) {
+
+        static final Columns EMPTY = new Columns(new long[0], new long[0], new int[0], new int[0], new int[0][]);
+
+        static Columns of(List<Row> rows) {
+            Columns columns = new Columns(new long[rows.size()], new long[rows.size()], new int[rows.size()],
+                    new int[rows.size()], new int[rows.size()][]);
+            for (int i = 0; i < rows.size(); i++) {
+                columns.set(i, rows.get(i));
+            }
+            return columns;
+        }
+
+        int position(long id) {
+            return Arrays.binarySearch(ids, id);
+        }
+
+        void set(int i, Row row) {
+            ids[i] = row.id();
+            acquisitionDates[i] = row.acquisitionDate();
+            offices[i] = row.office();
+            assetTypes[i] = row.assetType();
+            licenses[i] = row.licenses();
+        }
+
+        Row get(int i) {
+            return new Row(ids[i], acquisitionDates[i], offices[i], assetTypes[i], licenses[i]);
+        }
+    }
+
+    /**
+     * Filters of a search, an empty set or a null value doesn't filter.
+     * The assets match any of the offices, any of the asset types and any of the licenses
+     *
+     * @param offices the pks of the offices
+     * @param assetTypes the pks of the asset types
+     * @param licenses the pks of the licenses, the asset must have at least one of them
+     * @param acquiredFrom the first acquisition date, inclusive
+     * @param acquiredTo the last acquisition date, inclusive
+     * @param serialNumberPrefix the beginning of the serial number, the case is ignored
+     */
+    public record Filter(Set<Long> offices, Set<Long> assetTypes, Set<Long> licenses,
+                         Date acquiredFrom, Date acquiredTo, String serialNumberPrefix) {
+    }
+
+    /**
+     * Result of a search. The counts of a dimension apply every filter but the ones of that dimension,
+     * so they tell how many assets each value would add to the current selection
+     *
+     * @param ids the pks of the matching assets after the cursor, in id order
+     * @param total the number of matching assets
+     * @param offices the number of assets by office
+     * @param assetTypes the number of assets by asset type
+     * @param licenses the number of assets by installed license
+     */
+    public record Result(List<Long> ids, long total, Map<Long, Integer> offices, Map<Long, Integer> assetTypes,
+                         Map<Long, Integer> licenses) {
+    }
+
+    /**
+     * Dense numbering of the ids of a dimension, an ordinal is never reused until the index is built again
+     */
+    private static final class Ordinals {
+
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private long[] ids = new long[64];
+
+        int of(Long id) {
+            if (id == null) {
+                return NONE;
+            }
+            return ordinals.computeIfAbsent(id, key -> {
+                int ordinal = ordinals.size();
+                if (ordinal == ids.length) {
+                    ids = Arrays.copyOf(ids, ordinal * 2);
+                }
+                ids[ordinal] = key;
+                return ordinal;
+            });
+        }
+
+        int size() {
+            return ordinals.size();
+        }
+
+        // null when the filter is empty, the unknown ids select nothing
+        boolean[] select(Set<Long> filter) {
+            if (filter.isEmpty()) {
+                return null;
+            }
+            boolean[] selected = new boolean[size()];
+            for (Long id : filter) {
+                Integer ordinal = ordinals.get(id);
+                if (ordinal != null) {
+                    selected[ordinal] = true;
+                }
+            }
+            return selected;
+        }
+
+        Map<Long, Integer> counts(int[] counts) {
+            Map<Long, Integer> result = new HashMap<>();
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                if (counts[ordinal] > 0) {
+                    result.put(ids[ordinal], counts[ordinal]);
+                }
+            }
+            return result;
+        }
+    }
+
+    // the columns are patched and swapped under the write lock, the searches share the read lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // a single refresh at a time, the only writer of the columns and the ordinals.
+    // Not a monitor: the refresh queries the database, a virtual thread blocked in a monitor pins its carrier
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private Columns columns = Columns.EMPTY;
+    private Ordinals offices = new Ordinals();
+    private Ordinals assetTypes = new Ordinals();
+    private Ordinals licenses = new Ordinals();
+
+    private final Set<Long> staleIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> staleSerialNumbers = ConcurrentHashMap.newKeySet();
+    private final Set<Long> staleOffices = ConcurrentHashMap.newKeySet();
+    private final Set<Long> staleAssetTypes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> staleLicenses = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    private final AssetRepository assetRepository;
+    private final SerialNumberIndex serialNumberIndex;
+
+    public AssetFacetIndex(AssetRepository assetRepository, SerialNumberIndex serialNumberIndex) {
+        this.assetRepository = assetRepository;
+        this.serialNumberIndex = serialNumberIndex;
+    }
+
+    /**
+     * Finds the assets matching the filters and counts them by office, asset type and license
+     *
+     * @param filter the filters of the search
+     * @param afterId the id of the last asset of the previous page, null for the first page
+     * @param limit the maximum number of ids to return
+     * @return the ids of the page and the counts
+     */
+    public Result search(Filter filter, Long afterId, int limit) {
+        refresh();
+        List<Long> serialMatches = filter.serialNumberPrefix() == null || filter.serialNumberPrefix().isEmpty()
+                ? null : serialNumberIndex.findIds(filter.serialNumberPrefix());
+        boolean dated = filter.acquiredFrom() != null || filter.acquiredTo() != null;
+        long from = filter.acquiredFrom() == null ? NO_DATE + 1 : filter.acquiredFrom().getTime();
+        long to = filter.acquiredTo() == null ? Long.MAX_VALUE : filter.acquiredTo().getTime();
+        long after = afterId == null ? Long.MIN_VALUE : afterId;
+
+        lock.readLock().lock();
+        try {
+            Columns columns = this.columns;
+            boolean[] officeFilter = offices.select(filter.offices());
+            boolean[] assetTypeFilter = assetTypes.select(filter.assetTypes());
+            boolean[] licenseFilter = licenses.select(filter.licenses());
+            BitSet serialFilter = serialMatches == null ? null : positions(columns, serialMatches);
+            int[] officeCounts = new int[offices.size()];
+            int[] assetTypeCounts = new int[assetTypes.size()];
+            int[] licenseCounts = new int[licenses.size()];
+            List<Long> ids = new ArrayList<>(limit);
+            long total = 0;
+            for (int i = 0; i < columns.ids().length; i++) {
+                // the date and the serial number are not counted, they filter every dimension
+                if (serialFilter != null && !serialFilter.get(i)) {
+                    continue;
+                }
+                long date = columns.acquisitionDates()[i];
+                if (dated && (date < from || date > to)) {
+                    continue;
+                }
+                int officeOrdinal = columns.offices()[i];
+                int assetTypeOrdinal = columns.assetTypes()[i];
+                int[] installed = columns.licenses()[i];
+                boolean office = officeFilter == null || (officeOrdinal != NONE && officeFilter[officeOrdinal]);
+                boolean assetType = assetTypeFilter == null || (assetTypeOrdinal != NONE && assetTypeFilter[assetTypeOrdinal]);
+                boolean license = licenseFilter == null || hasAny(installed, licenseFilter);
+                if (assetType && license && officeOrdinal != NONE) {
+                    officeCounts[officeOrdinal]++;
+                }
+                if (office && license && assetTypeOrdinal != NONE) {
+                    assetTypeCounts[assetTypeOrdinal]++;
+                }
+                if (office && assetType) {
+                    for (int ordinal : installed) {
+                        licenseCounts[ordinal]++;
+                    }
+                }
+                if (office && assetType && license) {
+                    total++;
+                    if (columns.ids()[i] > after && ids.size() < limit) {
+                        ids.add(columns.ids()[i]);
+                    }
+                }
+            }
+            return new Result(ids, total, offices.counts(officeCounts), assetTypes.counts(assetTypeCounts),
+                    licenses.counts(licenseCounts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks some assets to be reloaded by the next search
+     *
+     * @param assetIds the pks of the changed assets
+     */
+    void invalidateIds(Collection<Long> assetIds) {
+        staleIds.addAll(assetIds);
+    }
+
+    /**
+     * Marks the assets with some serial numbers to be reloaded by the next search
+     *
+     * @param serials the changed serial numbers
+     */
+    void invalidateSerialNumbers(Collection<String> serials) {
+        staleSerialNumbers.addAll(serials);
+    }
+
+    /**
+     * Marks the assets of some offices to be reloaded by the next search, e.g. after a move of a whole office
+     *
+     * @param officeIds the pks of the changed offices
+     */
+    void invalidateOffices(Collection<Long> officeIds) {
+        staleOffices.addAll(officeIds);
+    }
+
+    /**
+     * Marks the assets of some asset types to be reloaded by the next search
+     *
+     * @param assetTypeIds the pks of the changed asset types
+     */
+    void invalidateAssetTypes(Collection<Long> assetTypeIds) {
+        staleAssetTypes.addAll(assetTypeIds);
+    }
+
+    /**
+     * Marks the assets having some licenses to be reloaded by the next search
+     *
+     * @param licenseIds the pks of the changed licenses
+     */
+    void invalidateLicenses(Collection<Long> licenseIds) {
+        staleLicenses.addAll(licenseIds);
+    }
+
+    /**
+     * Drops the whole index, it is built again by the next search
+     */
+    void clear() {
+        loaded = false;
+    }
+
+    private void refresh() {
+        if (loaded && staleIds.isEmpty() && staleSerialNumbers.isEmpty() && staleOffices.isEmpty()
+                && staleAssetTypes.isEmpty() && staleLicenses.isEmpty()) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            if (!loaded) {
+                build();
+            } else {
+                reload();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // everything is read and built aside, the searches keep the old index until the swap
+    private void build() {
+        staleIds.clear();
+        staleSerialNumbers.clear();
+        staleOffices.clear();
+        staleAssetTypes.clear();
+        staleLicenses.clear();
+        Ordinals newOffices = new Ordinals();
+        Ordinals newAssetTypes = new Ordinals();
+        Ordinals newLicenses = new Ordinals();
+        List<Row> rows = rows(assetRepository.findAllFacets(), assetRepository.findAllLicenseLinks(),
+                newOffices, newAssetTypes, newLicenses);
+        rows.sort(Comparator.comparingLong(Row::id));
+        Columns built = Columns.of(rows);
+        lock.writeLock().lock();
+        try {
+            columns = built;
+            offices = newOffices;
+            assetTypes = newAssetTypes;
+            licenses = newLicenses;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+        log.info("Asset facet index built with {} assets", rows.size());
+    }
+
+    // the refresh is the only writer, it reads the columns and the ordinals without the lock
+    private void reload() {
+        Set<Long> ids = new HashSet<>(drain(staleIds));
+        List<String> serials = drain(staleSerialNumbers);
+        boolean[] staleOffice = offices.select(new HashSet<>(drain(staleOffices)));
+        boolean[] staleAssetType = assetTypes.select(new HashSet<>(drain(staleAssetTypes)));
+        boolean[] staleLicense = licenses.select(new HashSet<>(drain(staleLicenses)));
+        if (!serials.isEmpty()) {
+            // the serial numbers are not indexed here, only the assets that have them now are new
+            assetRepository.findSerialNumbers(serials).forEach(asset -> ids.add(asset.getId()));
+        }
+        if (staleOffice != null || staleAssetType != null || staleLicense != null) {
+            Columns current = columns;
+            for (int i = 0; i < current.ids().length; i++) {
+                if ((staleOffice != null && current.offices()[i] != NONE && staleOffice[current.offices()[i]])
+                        || (staleAssetType != null && current.assetTypes()[i] != NONE && staleAssetType[current.assetTypes()[i]])
+                        || (staleLicense != null && hasAny(current.licenses()[i], staleLicense))) {
+                    ids.add(current.ids()[i]);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<AssetFacets> assets = assetRepository.findFacetsByIds(ids);
+        List<AssetLicenseLink> links = assetRepository.findLicenseLinksByIds(ids);
+
+        // the assets still there are patched in place, the others change the length of the columns
+        Map<Long, Row> added = new TreeMap<>();
+        Set<Long> removed = new HashSet<>(ids);
+        lock.writeLock().lock();
+        try {
+            Columns current = columns;
+            for (Row row : rows(assets, links, offices, assetTypes, licenses)) {
+                removed.remove(row.id());
+                int position = current.position(row.id());
+                if (position >= 0) {
+                    current.set(position, row);
+                } else {
+                    added.put(row.id(), row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        removed.removeIf(id -> columns.position(id) < 0);
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            Columns merged = merge(columns, added, removed);
+            lock.writeLock().lock();
+            try {
+                columns = merged;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.debug("{} assets reloaded in the asset facet index, {} added, {} removed", ids.size(), added.size(), removed.size());
+    }
+
+    private static List<Row> rows(List<AssetFacets> assets, List<AssetLicenseLink> links,
+                                  Ordinals offices, Ordinals assetTypes, Ordinals licenses) {
+        Map<Long, List<Long>> installed = links.stream().collect(Collectors.groupingBy(AssetLicenseLink::getAssetId,
+                Collectors.mapping(AssetLicenseLink::getLicenseId, Collectors.toList())));
+        List<Row> rows = new ArrayList<>(assets.size());
+        for (AssetFacets asset : assets) {
+            List<Long> licenseIds = installed.get(asset.getId());
+            rows.add(new Row(asset.getId(),
+                    asset.getAcquisitionDate() == null ? NO_DATE : asset.getAcquisitionDate().getTime(),
+                    offices.of(asset.getOfficeId()),
+                    assetTypes.of(asset.getAssetTypeId()),
+                    licenseIds == null ? NO_LICENSES : licenseIds.stream().mapToInt(licenses::of).toArray()));
+        }
+        return rows;
+    }
+
+    // new columns with the added assets and without the removed ones, in id order
+    private static Columns merge(Columns current, Map<Long, Row> added, Set<Long> removed) {
+        List<Row> rows = new ArrayList<>(current.ids().length + added.size() - removed.size());
+        Iterator<Row> additions = added.values().iterator();
+        Row next = additions.hasNext() ? additions.next() : null;
+        for (int i = 0; i < current.ids().length; i++) {
+            while (next != null && next.id() < current.ids()[i]) {
+                rows.add(next);
+                next = additions.hasNext() ? additions.next() : null;
+            }
+            if (!removed.contains(current.ids()[i])) {
+                rows.add(current.get(i));
+            }
+        }
+        while (next != null) {
+            rows.add(next);
+            next = additions.hasNext() ? additions.next() : null;
+        }
+        return Columns.of(rows);
+    }
+
+    // the positions in the columns of some assets
+    private static BitSet positions(Columns columns, List<Long> ids) {
+        BitSet positions = new BitSet(columns.ids().length);
+        for (Long id : ids) {
+            int position = columns.position(id);
+            if (position >= 0) {
+                positions.set(position);
+            }
+        }
+        return positions;
+    }
+
+    private static <T> List<T> drain(Set<T> stale) {
+        List<T> drained = new ArrayList<>(stale);
+        stale.removeAll(drained);
+        return drained;
+    }
+
+    private static boolean hasAny(int[] licenses, boolean[] selected) {
+        for (int ordinal : licenses) {
+            if (ordinal < selected.length && selected[ordinal]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.spindox.ciams.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Message telling every replica that some entities have changed and the cache entries built on them are stale.
+ * The keys are the ids of the entities, or the serial numbers for {@link Type#SERIAL_NUMBER}.
+ * {@link Type#COUNTERS} carries the changes of the {@link InventoryCounters} made by a write
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidation {
+
+    public enum Type {
+        OFFICE, ASSET_TYPE, SOFTWARE_LICENSE, ASSET, SERIAL_NUMBER, COUNTERS,
+        // every cache is cleared, e.g. after a replica lost messages
+        ALL
+    }
+
+    // the replica that published the message
+    private String origin;
+    private Type type;
+    private List<String> keys;
+}
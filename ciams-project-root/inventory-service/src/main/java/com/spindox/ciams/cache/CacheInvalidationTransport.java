@@ -0,0 +1,24 @@
+package com.spindox.ciams.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel carrying the cache invalidations between the replicas
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Sends a message to every replica, the publishing one included.
+     * A message published inside a transaction is only delivered once the transaction commits
+     *
+     * @param invalidation the message to send
+     */
+    void publish(CacheInvalidation invalidation);
+
+    /**
+     * Registers a listener of the messages received by this replica
+     *
+     * @param listener called once for every message
+     */
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,207 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.config.CacheConfig;
+import com.spindox.ciams.model.AssetType;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.model.SoftwareLicense;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Single entry point of the cache invalidations.
+ * The writes tell which entities have changed, the entries built on them are evicted on this replica
+ * after the commit and the change is published to the other replicas through the transport.
+ * Hibernate keeps its second-level cache up to date on the replica that writes,
+ * the other replicas evict the entities and the query results when they receive the message
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final CacheInvalidationTransport transport;
+    private final CacheManager cacheManager;
+    private final AssetCache assetCache;
+    private final LicenseIndex licenseIndex;
+    private final SerialNumberIndex serialNumberIndex;
+    private final AssetFacetIndex assetFacetIndex;
+    private final InventoryCounters inventoryCounters;
+    private final CollectionVersions collectionVersions;
+    private final org.hibernate.Cache secondLevelCache;
+
+    public CacheInvalidator(CacheInvalidationTransport transport, CacheManager cacheManager, AssetCache assetCache,
+                            LicenseIndex licenseIndex, SerialNumberIndex serialNumberIndex,
+                            AssetFacetIndex assetFacetIndex, InventoryCounters inventoryCounters,
+                            CollectionVersions collectionVersions, EntityManagerFactory entityManagerFactory) {
+        this.transport = transport;
+        this.cacheManager = cacheManager;
+        this.assetCache = assetCache;
+        this.licenseIndex = licenseIndex;
+        this.serialNumberIndex = serialNumberIndex;
+        this.assetFacetIndex = assetFacetIndex;
+        this.inventoryCounters = inventoryCounters;
+        this.collectionVersions = collectionVersions;
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        transport.subscribe(this::receive);
+    }
+
+    /**
+     * Invalidates the entries built on an entity
+     *
+     * @param type the type of the entity
+     * @param key the id of the entity, or the serial number
+     */
+    public void invalidate(CacheInvalidation.Type type, Object key) {
+        if (key != null) {
+            invalidate(type, List.of(key));
+        }
+    }
+
+    /**
+     * Invalidates the entries built on many entities of the same type
+     *
+     * @param type the type of the entities
+     * @param keys the ids of the entities, or the serial numbers
+     */
+    public void invalidate(CacheInvalidation.Type type, Collection<?> keys) {
+        List<String> values = keys.stream().filter(Objects::nonNull).map(String::valueOf).distinct().toList();
+        if (values.isEmpty()) {
+            return;
+        }
+        CacheInvalidation invalidation = new CacheInvalidation(origin, type, values);
+        collectionVersions.increment(type);
+        afterCommit(() -> apply(invalidation));
+        transport.publish(invalidation);
+    }
+
+    /**
+     * Adds the changes made by a write to the inventory counters of every replica
+     *
+     * @param delta the changes of the counters
+     */
+    public void count(InventoryCounters.Delta delta) {
+        invalidate(CacheInvalidation.Type.COUNTERS, delta.keys());
+    }
+
+    private void receive(CacheInvalidation invalidation) {
+        // this replica has already applied its own messages
+        if (!origin.equals(invalidation.getOrigin())) {
+            log.debug("Received cache invalidation {}", invalidation);
+            apply(invalidation);
+        }
+    }
+
+    private void apply(CacheInvalidation invalidation) {
+        List<String> keys = invalidation.getKeys();
+        switch (invalidation.getType()) {
+            case OFFICE -> {
+                Set<Long> ids = ids(keys);
+                ids.forEach(id -> evict(CacheConfig.OFFICE_BY_ID, id));
+                evictEntities(Office.class, ids);
+                // the by-name region is keyed by the name, that may be the old one after a rename
+                clear(CacheConfig.OFFICE_BY_NAME);
+                clear(CacheConfig.OFFICE_LIST);
+                // the cached assets embed the office
+                assetCache.evictIf(asset -> asset.getOffice() != null && ids.contains(asset.getOffice().getId()));
+                // a move of a whole office only tells the office the assets left
+                assetFacetIndex.invalidateOffices(ids);
+            }
+            case ASSET_TYPE -> {
+                Set<Long> ids = ids(keys);
+                ids.forEach(id -> evict(CacheConfig.ASSET_TYPE_BY_ID, id));
+                evictEntities(AssetType.class, ids);
+                clear(CacheConfig.ASSET_TYPE_BY_NAME);
+                clear(CacheConfig.ASSET_TYPE_LIST);
+                assetCache.evictIf(asset -> asset.getAssetType() != null && ids.contains(asset.getAssetType().getId()));
+                assetFacetIndex.invalidateAssetTypes(ids);
+            }
+            case SOFTWARE_LICENSE -> {
+                Set<Long> ids = ids(keys);
+                evictEntities(SoftwareLicense.class, ids);
+                licenseIndex.invalidate(ids);
+                assetCache.evictIf(asset -> asset.getSoftwareLicenses() != null &&
+                        asset.getSoftwareLicenses().stream().anyMatch(license -> ids.contains(license.getId())));
+                assetFacetIndex.invalidateLicenses(ids);
+            }
+            case ASSET -> {
+                Set<Long> ids = ids(keys);
+                ids.forEach(assetCache::evict);
+                serialNumberIndex.invalidateIds(ids);
+                assetFacetIndex.invalidateIds(ids);
+            }
+            case SERIAL_NUMBER -> {
+                assetCache.evictSerialNumbers(Set.copyOf(keys));
+                serialNumberIndex.invalidateSerialNumbers(keys);
+                assetFacetIndex.invalidateSerialNumbers(keys);
+            }
+            case COUNTERS -> inventoryCounters.apply(keys);
+            case ALL -> {
+                CacheConfig.REGIONS.forEach(this::clear);
+                assetCache.clear();
+                licenseIndex.clear();
+                serialNumberIndex.clear();
+                assetFacetIndex.clear();
+                // the counters may have missed some changes
+                inventoryCounters.clear();
+                secondLevelCache.evictAllRegions();
+            }
+        }
+        // after the evictions, an ETag read before a cached list must never be newer than the list.
+        // A clear reads every version again, the messages lost meanwhile may have changed them
+        if (invalidation.getType() == CacheInvalidation.Type.ALL) {
+            collectionVersions.changedAll();
+        } else {
+            collectionVersions.changed(invalidation.getType());
+        }
+    }
+
+    private void evictEntities(Class<?> entity, Set<Long> ids) {
+        ids.forEach(id -> secondLevelCache.evictEntityData(entity, id));
+        secondLevelCache.evictDefaultQueryRegion();
+    }
+
+    private void evict(String region, Long id) {
+        Cache cache = cacheManager.getCache(region);
+        if (cache != null) {
+            cache.evict(id);
+        }
+    }
+
+    private void clear(String region) {
+        Cache cache = cacheManager.getCache(region);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static Set<Long> ids(List<String> keys) {
+        return keys.stream().map(Long::valueOf).collect(Collectors.toSet());
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.spindox.ciams.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the collections of offices, asset types and licenses, the ETags of the list endpoints.
+ * A version is a row of the collection_version table, increased in the transaction of every write
+ * of the collection, so every replica gives the same ETag to the same list.
+ * The replicas keep the versions in memory and read a version again when they apply an invalidation
+ * of its type, after the evictions
+ */
+@Slf4j
+@Component
+public class CollectionVersions {
+
+    /**
+     * The collections with an ETag
+     */
+    public static final List<CacheInvalidation.Type> TYPES = List.of(
+            CacheInvalidation.Type.OFFICE, CacheInvalidation.Type.ASSET_TYPE, CacheInvalidation.Type.SOFTWARE_LICENSE);
+
+    // a version not read yet, or that couldn't be read after an invalidation
+    private static final long UNKNOWN = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<CacheInvalidation.Type, AtomicLong> versions = new EnumMap<>(CacheInvalidation.Type.class);
+
+    public CollectionVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        TYPES.forEach(type -> versions.put(type, new AtomicLong(UNKNOWN)));
+    }
+
+    /**
+     * Strong ETag of a collection. It must be read before the collection,
+     * a change committed in between then gives a newer list under an older ETag, never the opposite
+     *
+     * @param type the type of the entities of the collection
+     * @return the quoted ETag
+     */
+    public String etag(CacheInvalidation.Type type) {
+        long version = versions.get(type).get();
+        if (version == UNKNOWN) {
+            version = read(type);
+        }
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Increases the version of a collection in the transaction of the write.
+     * The row of a collection never written before is created
+     *
+     * @param type the type of the entities written
+     */
+    void increment(CacheInvalidation.Type type) {
+        if (!versions.containsKey(type)) {
+            return;
+        }
+        int updated = jdbcTemplate.update(
+                "update inventory.collection_version set version = version + 1 where collection = ?", type.name());
+        if (updated == 0) {
+            jdbcTemplate.update("insert into inventory.collection_version (collection, version) values (?, 1)", type.name());
+        }
+    }
+
+    void changed(CacheInvalidation.Type type) {
+        if (versions.containsKey(type)) {
+            try {
+                read(type);
+            } catch (DataAccessException e) {
+                // read again by the next request, an older version must not be kept
+                log.warn("Version of the {} collection can't be read: {}", type, e.getMessage());
+                versions.get(type).set(UNKNOWN);
+            }
+        }
+    }
+
+    void changedAll() {
+        TYPES.forEach(this::changed);
+    }
+
+    // the versions only grow, a read finishing after a newer one never brings the older version back
+    private long read(CacheInvalidation.Type type) {
+        List<Long> stored = jdbcTemplate.queryForList(
+                "select version from inventory.collection_version where collection = ?", Long.class, type.name());
+        long version = stored.isEmpty() ? 0 : stored.get(0);
+        return versions.get(type).accumulateAndGet(version, Math::max);
+    }
+}
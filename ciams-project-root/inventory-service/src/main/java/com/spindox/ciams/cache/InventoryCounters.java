@@ -0,0 +1,198 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.CountById;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Number of assets by office and by asset type, and number of installations by license.
+ * The writes send the changes they made as a {@link Delta} through the {@link CacheInvalidator},
+ * every replica adds them to its counters after the commit, so the reads never count the rows.
+ * The counters are computed with GROUP BY queries on the first read and by a periodic reconciliation,
+ * that corrects the drift left by lost messages and by writes made outside the service
+ */
+@Slf4j
+@Component
+public class InventoryCounters {
+
+    public enum Dimension {
+        OFFICE, ASSET_TYPE, LICENSE
+    }
+
+    /**
+     * Changes of the counters made by a write, added up by dimension and id
+     */
+    public static final class Delta {
+
+        private final Map<Dimension, Map<Long, Long>> changes = new HashMap<>();
+
+        public Delta office(Long id, long count) {
+            return add(Dimension.OFFICE, id, count);
+        }
+
+        public Delta assetType(Long id, long count) {
+            return add(Dimension.ASSET_TYPE, id, count);
+        }
+
+        public Delta license(Long id, long count) {
+            return add(Dimension.LICENSE, id, count);
+        }
+
+        private Delta add(Dimension dimension, Long id, long count) {
+            if (id != null && count != 0) {
+                changes.computeIfAbsent(dimension, key -> new HashMap<>()).merge(id, count, Long::sum);
+            }
+            return this;
+        }
+
+        // "dimension:id:count", the changes that cancel out are not sent
+        List<String> keys() {
+            List<String> keys = new ArrayList<>();
+            changes.forEach((dimension, counts) -> counts.forEach((id, count) -> {
+                if (count != 0) {
+                    keys.add(dimension + ":" + id + ":" + count);
+                }
+            }));
+            return keys;
+        }
+    }
+
+    private final Map<Dimension, Map<Long, AtomicLong>> counters = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    // a single reconciliation at a time, its GROUP BY queries run under it
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    private final AssetRepository assetRepository;
+    private final Counter drift;
+
+    public InventoryCounters(AssetRepository assetRepository, MeterRegistry meterRegistry) {
+        this.assetRepository = assetRepository;
+        this.drift = Counter.builder("inventory.counters.drift")
+                .description("Difference between the inventory counters and the counts found by the reconciliation")
+                .register(meterRegistry);
+        for (Dimension dimension : Dimension.values()) {
+            counters.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Reads the counters of a dimension
+     *
+     * @param dimension the office, the asset type or the license
+     * @return the count by id, the ids counting zero are left out
+     */
+    public Map<Long, Long> get(Dimension dimension) {
+        if (!loaded) {
+            reconcile();
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        counters.get(dimension).forEach((id, count) -> {
+            if (count.get() != 0) {
+                counts.put(id, count.get());
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Reads a single counter
+     *
+     * @param dimension the office, the asset type or the license
+     * @param id the pk of the office, asset type or license
+     * @return the number of assets, or of installations for a license
+     */
+    public long get(Dimension dimension, Long id) {
+        if (!loaded) {
+            reconcile();
+        }
+        AtomicLong count = counters.get(dimension).get(id);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Computes the counters again with GROUP BY queries and logs the drift corrected.
+     * The changes committed while the queries run may be counted twice or missed until the next run
+     */
+    @Scheduled(fixedDelayString = "${ciams.counters.reconcile-interval:10m}",
+            initialDelayString = "${ciams.counters.reconcile-interval:10m}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            boolean initial = !loaded;
+            long corrected = 0;
+            corrected += replace(Dimension.OFFICE, assetRepository.countByOffice());
+            corrected += replace(Dimension.ASSET_TYPE, assetRepository.countByAssetType());
+            corrected += replace(Dimension.LICENSE, assetRepository.countByLicense());
+            loaded = true;
+            if (initial) {
+                log.info("Inventory counters computed");
+            } else if (corrected > 0) {
+                drift.increment(corrected);
+                log.warn("Inventory counters reconciled, {} counts corrected", corrected);
+            }
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the changes of a write, read from the keys of a {@link CacheInvalidation}
+     *
+     * @param keys the changes in the "dimension:id:count" form
+     */
+    void apply(List<String> keys) {
+        // the first read computes every counter, the changes up to then are already in the tables
+        if (!loaded) {
+            return;
+        }
+        for (String key : keys) {
+            String[] parts = key.split(":");
+            Dimension dimension = Dimension.valueOf(parts[0]);
+            counters.get(dimension).computeIfAbsent(Long.valueOf(parts[1]), id -> new AtomicLong())
+                    .addAndGet(Long.parseLong(parts[2]));
+        }
+    }
+
+    /**
+     * Drops the counters, they are computed again by the next read
+     */
+    void clear() {
+        loaded = false;
+    }
+
+    private long replace(Dimension dimension, List<CountById> counts) {
+        Map<Long, AtomicLong> current = counters.get(dimension);
+        long corrected = 0;
+        Set<Long> ids = new HashSet<>();
+        for (CountById count : counts) {
+            if (count.getId() == null) {
+                continue;
+            }
+            ids.add(count.getId());
+            AtomicLong counter = current.computeIfAbsent(count.getId(), id -> new AtomicLong());
+            corrected += Math.abs(counter.getAndSet(count.getCount()) - count.getCount());
+        }
+        // the offices, types and licenses without assets anymore
+        for (Map.Entry<Long, AtomicLong> counter : current.entrySet()) {
+            if (!ids.contains(counter.getKey())) {
+                corrected += Math.abs(counter.getValue().getAndSet(0));
+                current.remove(counter.getKey());
+            }
+        }
+        return corrected;
+    }
+}
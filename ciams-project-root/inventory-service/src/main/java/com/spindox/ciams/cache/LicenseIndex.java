@@ -0,0 +1,295 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.mapper.SoftwareLicenseMapper;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory indexes of the software licenses: the licenses ordered by expire date and id,
+ * and the trigrams of the lowercase names for the substring search.
+ * They are built on the first query, the licenses invalidated through the {@link CacheInvalidator}
+ * are reloaded by the next query. Licenses without an expire date are not in the expiry index
+ */
+@Slf4j
+@Component
+public class LicenseIndex {
+
+    private record Key(long expireDate, long id) {
+    }
+
+    // the lowercase name is computed once, on load
+    private record Entry(SoftwareLicenseDto license, String name) {
+    }
+
+    private record Match(SoftwareLicenseDto license, boolean prefix, double similarity) {
+    }
+
+    private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::expireDate).thenComparingLong(Key::id);
+
+    // best match first: names starting with the text, then the most similar, then by name
+    private static final Comparator<Match> RANKING = Comparator.comparing(Match::prefix)
+            .thenComparingDouble(Match::similarity)
+            .thenComparing(match -> String.valueOf(match.license().getName()), Comparator.reverseOrder())
+            .reversed();
+
+    private final Map<Long, Entry> licenses = new ConcurrentHashMap<>();
+    private final NavigableMap<Key, SoftwareLicenseDto> byExpireDate = new ConcurrentSkipListMap<>(ORDER);
+    // sorted ids of the licenses whose lowercase name contains the trigram, replaced on every change
+    private final Map<String, long[]> byTrigram = new ConcurrentHashMap<>();
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    // held while the licenses are read from the database, a lock a waiting virtual thread can unmount from
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private final SoftwareLicenseRepository softwareLicenseRepository;
+    private final SoftwareLicenseMapper softwareLicenseMapper;
+
+    public LicenseIndex(SoftwareLicenseRepository softwareLicenseRepository, SoftwareLicenseMapper softwareLicenseMapper) {
+        this.softwareLicenseRepository = softwareLicenseRepository;
+        this.softwareLicenseMapper = softwareLicenseMapper;
+    }
+
+    /**
+     * Finds the licenses expiring in a range, ordered by expire date and id
+     *
+     * @param from the first expire date, inclusive, null for no lower bound
+     * @param to the last expire date, inclusive, null for no upper bound
+     * @param afterDate the expire date of the last license of the previous page, null for the first page
+     * @param afterId the id of the last license of the previous page
+     * @param limit the maximum number of licenses to return
+     * @return the licenses of the page
+     */
+    public List<SoftwareLicenseDto> findExpiring(Date from, Date to, Date afterDate, Long afterId, int limit) {
+        refresh();
+        // the lower bound is the cursor when it is past the start of the window
+        Key lower = from == null ? null : new Key(from.getTime(), Long.MIN_VALUE);
+        boolean lowerInclusive = true;
+        if (afterDate != null) {
+            Key after = new Key(afterDate.getTime(), afterId);
+            if (lower == null || ORDER.compare(after, lower) >= 0) {
+                lower = after;
+                lowerInclusive = false;
+            }
+        }
+        Key upper = to == null ? null : new Key(to.getTime(), Long.MAX_VALUE);
+        if (lower != null && upper != null && ORDER.compare(lower, upper) > 0) {
+            return new ArrayList<>();
+        }
+        NavigableMap<Key, SoftwareLicenseDto> range = byExpireDate;
+        if (lower != null) {
+            range = range.tailMap(lower, lowerInclusive);
+        }
+        if (upper != null) {
+            range = range.headMap(upper, true);
+        }
+        List<SoftwareLicenseDto> page = new ArrayList<>(limit);
+        for (SoftwareLicenseDto license : range.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(license);
+        }
+        return page;
+    }
+
+    /**
+     * Finds the licenses whose name contains a text, ignoring the case.
+     * The candidates share all the trigrams of the text, the best matches come first
+     *
+     * @param text the text to search
+     * @param limit the maximum number of licenses to return
+     * @return the matching licenses
+     */
+    public List<SoftwareLicenseDto> searchByName(String text, int limit) {
+        refresh();
+        String query = text.toLowerCase(Locale.ROOT);
+        // texts shorter than a trigram are searched in all the names
+        Collection<Entry> candidates = query.length() < 3 ? licenses.values() : candidates(query);
+
+        // the worst of the best matches is at the head
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Entry entry : candidates) {
+            String name = entry.name();
+            if (!name.contains(query)) {
+                continue;
+            }
+            // the name contains the text, the similarity is the share of the name covered by it
+            best.add(new Match(entry.license(), name.startsWith(query), (double) query.length() / name.length()));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(RANKING);
+        return matches.stream().map(Match::license).toList();
+    }
+
+    /**
+     * Finds some licenses by id
+     *
+     * @param ids the pks of the licenses
+     * @return the licenses that exist
+     */
+    public List<SoftwareLicenseDto> findByIds(Collection<Long> ids) {
+        refresh();
+        return ids.stream().map(licenses::get).filter(entry -> entry != null).map(Entry::license).toList();
+    }
+
+    /**
+     * Marks some licenses to be reloaded by the next query
+     *
+     * @param ids the pks of the changed licenses
+     */
+    void invalidate(Collection<Long> ids) {
+        stale.addAll(ids);
+    }
+
+    /**
+     * Drops the whole index, it is built again by the next query
+     */
+    void clear() {
+        loaded = false;
+    }
+
+    private List<Entry> candidates(String query) {
+        List<long[]> postings = new ArrayList<>();
+        for (String trigram : trigrams(query)) {
+            long[] ids = byTrigram.get(trigram);
+            if (ids == null) {
+                return List.of();
+            }
+            postings.add(ids);
+        }
+        // the shortest list drives the intersection
+        postings.sort(Comparator.comparingInt(ids -> ids.length));
+        List<Entry> candidates = new ArrayList<>();
+        for (long id : postings.get(0)) {
+            boolean all = true;
+            for (int i = 1; i < postings.size() && all; i++) {
+                all = Arrays.binarySearch(postings.get(i), id) >= 0;
+            }
+            Entry entry = all ? licenses.get(id) : null;
+            if (entry != null) {
+                candidates.add(entry);
+            }
+        }
+        return candidates;
+    }
+
+    private void refresh() {
+        // nothing to reload, the queries don't take the lock
+        if (loaded && stale.isEmpty()) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reload() {
+        if (!loaded) {
+            stale.clear();
+            licenses.clear();
+            byExpireDate.clear();
+            byTrigram.clear();
+            softwareLicenseRepository.findAll().forEach(this::put);
+            loaded = true;
+            log.info("License index built with {} licenses", licenses.size());
+            return;
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(stale);
+        stale.removeAll(ids);
+        ids.forEach(this::remove);
+        softwareLicenseRepository.findAllById(ids).forEach(this::put);
+        log.debug("{} licenses reloaded in the license index", ids.size());
+    }
+
+    private void put(SoftwareLicense license) {
+        SoftwareLicenseDto dto = softwareLicenseMapper.toDto(license);
+        String name = dto.getName() == null ? "" : dto.getName().toLowerCase(Locale.ROOT);
+        licenses.put(dto.getId(), new Entry(dto, name));
+        if (dto.getExpireDate() != null) {
+            byExpireDate.put(new Key(dto.getExpireDate().getTime(), dto.getId()), dto);
+        }
+        for (String trigram : trigrams(name)) {
+            byTrigram.compute(trigram, (key, ids) -> add(ids, dto.getId()));
+        }
+    }
+
+    private void remove(Long id) {
+        Entry entry = licenses.remove(id);
+        if (entry == null) {
+            return;
+        }
+        if (entry.license().getExpireDate() != null) {
+            byExpireDate.remove(new Key(entry.license().getExpireDate().getTime(), id));
+        }
+        for (String trigram : trigrams(entry.name())) {
+            byTrigram.computeIfPresent(trigram, (key, ids) -> remove(ids, id));
+        }
+    }
+
+    private static Set<String> trigrams(String lowercase) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= lowercase.length(); i++) {
+            trigrams.add(lowercase.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static long[] add(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertion = -position - 1;
+        long[] added = new long[ids.length + 1];
+        System.arraycopy(ids, 0, added, 0, insertion);
+        added[insertion] = id;
+        System.arraycopy(ids, insertion, added, insertion + 1, ids.length - insertion);
+        return added;
+    }
+
+    // null drops the trigram once no license has it
+    private static long[] remove(long[] ids, long id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] removed = new long[ids.length - 1];
+        System.arraycopy(ids, 0, removed, 0, position);
+        System.arraycopy(ids, position + 1, removed, position, ids.length - position - 1);
+        return removed;
+    }
+}
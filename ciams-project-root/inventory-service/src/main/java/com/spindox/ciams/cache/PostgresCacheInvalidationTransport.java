@@ -0,0 +1,168 @@
+package com.spindox.ciams.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport on Postgres LISTEN/NOTIFY.
+ * The messages are sent with pg_notify on the connection of the current transaction, so Postgres
+ * delivers them only on commit. Every replica listens on a dedicated connection, when it gets lost
+ * the messages sent meanwhile are lost too and every cache is cleared on reconnection
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ciams.cache.invalidation.transport", havingValue = "postgres")
+public class PostgresCacheInvalidationTransport implements CacheInvalidationTransport, SmartLifecycle {
+
+    // NOTIFY payloads must be shorter than 8000 bytes, a longer one fails the transaction of the write
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresCacheInvalidationTransport(JdbcTemplate jdbcTemplate, DataSourceProperties dataSourceProperties,
+                                              ObjectMapper objectMapper,
+                                              @Value("${ciams.cache.invalidation.channel:ciams_cache}") String channel,
+                                              @Value("${ciams.cache.invalidation.poll-timeout:10s}") Duration pollTimeout,
+                                              @Value("${ciams.cache.invalidation.reconnect-delay:5s}") Duration reconnectDelay) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(invalidation);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cache invalidation can't be serialized", e);
+        }
+        List<String> keys = invalidation.getKeys();
+        int payloadBytes = payload.getBytes(StandardCharsets.UTF_8).length;
+        if (payloadBytes > MAX_PAYLOAD_BYTES) {
+            if (keys.size() > 1) {
+                // too many keys for a single notification
+                int half = keys.size() / 2;
+                publish(new CacheInvalidation(invalidation.getOrigin(), invalidation.getType(), keys.subList(0, half)));
+                publish(new CacheInvalidation(invalidation.getOrigin(), invalidation.getType(), keys.subList(half, keys.size())));
+                return;
+            }
+            // a single key too long to be sent, the other replicas clear every cache instead
+            log.warn("Cache invalidation of {} bytes too long for a notification, clearing every cache", payloadBytes);
+            publish(new CacheInvalidation(invalidation.getOrigin(), CacheInvalidation.Type.ALL, List.of()));
+            return;
+        }
+        jdbcTemplate.queryForList("select pg_notify(?, ?)", channel, payload);
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        listenerThread.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Listening to the cache invalidations on channel {}", channel);
+                // the messages sent before this connection have been missed
+                deliver(new CacheInvalidation(null, CacheInvalidation.Type.ALL, List.of()));
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener disconnected, retrying in {}: {}", reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        try {
+            deliver(objectMapper.readValue(payload, CacheInvalidation.class));
+        } catch (JsonProcessingException e) {
+            log.error("Invalid cache invalidation {}", payload);
+        }
+    }
+
+    private void deliver(CacheInvalidation invalidation) {
+        for (Consumer<CacheInvalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (RuntimeException e) {
+                log.error("Cache invalidation {} failed", invalidation, e);
+            }
+        }
+    }
+}
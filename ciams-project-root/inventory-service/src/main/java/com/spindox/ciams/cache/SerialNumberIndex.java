@@ -0,0 +1,172 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetSerialNumber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of the asset serial numbers ordered by their lowercase form, for the prefix suggestions.
+ * It is built on the first query, the assets and the serial numbers invalidated through
+ * the {@link CacheInvalidator} are reloaded by the next query
+ */
+@Slf4j
+@Component
+public class SerialNumberIndex {
+
+    // the key is the lowercase serial, then the serial itself to keep serials differing by case apart
+    private static final char SEPARATOR = '\0';
+
+    // the maps of the index, a rebuild fills new ones and replaces them at once
+    private record Maps(NavigableMap<String, String> serialNumbers, Map<Long, String> keys, Map<String, Long> ids) {
+
+        Maps() {
+            this(new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private volatile Maps maps = new Maps();
+    private final Set<Long> staleIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> staleSerialNumbers = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    // the reloads query the assets under it, unlike a monitor it doesn't pin the carrier of a virtual thread
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private final AssetRepository assetRepository;
+
+    public SerialNumberIndex(AssetRepository assetRepository) {
+        this.assetRepository = assetRepository;
+    }
+
+    /**
+     * Finds the serial numbers starting with a prefix, ignoring the case
+     *
+     * @param prefix the beginning of the serial numbers
+     * @param limit the maximum number of serial numbers to return
+     * @return the serial numbers in alphabetical order
+     */
+    public List<String> suggest(String prefix, int limit) {
+        Maps current = refresh();
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<String> suggestions = new ArrayList<>(limit);
+        for (String serialNumber : current.serialNumbers().subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            if (suggestions.size() == limit) {
+                break;
+            }
+            suggestions.add(serialNumber);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Finds the assets whose serial number starts with a prefix, ignoring the case, e.g. for the facet search
+     *
+     * @param prefix the beginning of the serial numbers
+     * @return the pks of the assets, in the alphabetical order of their serial numbers
+     */
+    List<Long> findIds(String prefix) {
+        Maps current = refresh();
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<Long> found = new ArrayList<>();
+        for (String serialNumber : current.serialNumbers().subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            Long id = current.ids().get(serialNumber);
+            if (id != null) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Marks some assets to be reloaded by the next query
+     *
+     * @param assetIds the pks of the changed assets
+     */
+    void invalidateIds(Collection<Long> assetIds) {
+        staleIds.addAll(assetIds);
+    }
+
+    /**
+     * Marks some serial numbers to be reloaded by the next query, e.g. the ones of imported assets
+     *
+     * @param serials the changed serial numbers
+     */
+    void invalidateSerialNumbers(Collection<String> serials) {
+        staleSerialNumbers.addAll(serials);
+    }
+
+    /**
+     * Drops the whole index, it is built again by the next query
+     */
+    void clear() {
+        loaded = false;
+    }
+
+    private Maps refresh() {
+        // nothing to reload, the queries don't take the lock
+        if (loaded && staleIds.isEmpty() && staleSerialNumbers.isEmpty()) {
+            return maps;
+        }
+        reloadLock.lock();
+        try {
+            reload();
+            return maps;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reload() {
+        if (!loaded) {
+            staleIds.clear();
+            staleSerialNumbers.clear();
+            // the queries keep reading the previous maps until the new ones are complete
+            Maps rebuilt = new Maps();
+            assetRepository.findAllSerialNumbers().forEach(asset -> put(rebuilt, asset));
+            maps = rebuilt;
+            loaded = true;
+            log.info("Serial number index built with {} serial numbers", rebuilt.serialNumbers().size());
+            return;
+        }
+        Maps current = maps;
+        if (!staleIds.isEmpty()) {
+            List<Long> assetIds = new ArrayList<>(staleIds);
+            staleIds.removeAll(assetIds);
+            assetIds.forEach(id -> remove(current, id));
+            assetRepository.findSerialNumbersByIds(assetIds).forEach(asset -> put(current, asset));
+        }
+        if (!staleSerialNumbers.isEmpty()) {
+            List<String> serials = new ArrayList<>(staleSerialNumbers);
+            staleSerialNumbers.removeAll(serials);
+            serials.stream().map(current.ids()::get).filter(id -> id != null).forEach(id -> remove(current, id));
+            assetRepository.findSerialNumbers(serials).forEach(asset -> put(current, asset));
+        }
+    }
+
+    private static void put(Maps maps, AssetSerialNumber asset) {
+        // the asset may have had another serial number
+        remove(maps, asset.getId());
+        String key = asset.getSerialNumber().toLowerCase(Locale.ROOT) + SEPARATOR + asset.getSerialNumber();
+        maps.serialNumbers().put(key, asset.getSerialNumber());
+        maps.keys().put(asset.getId(), key);
+        maps.ids().put(asset.getSerialNumber(), asset.getId());
+    }
+
+    private static void remove(Maps maps, Long id) {
+        String key = maps.keys().remove(id);
+        if (key != null) {
+            maps.ids().remove(maps.serialNumbers().remove(key));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.spindox.ciams.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Function;
+
+/**
+ * Loader of a refreshable region. Refreshes run in the background while the old value
+ * is still served, each one is timed on the "cache.refresh" timer of the region
+ */
+@Slf4j
+public class TimedCacheLoader implements CacheLoader<Object, Object> {
+
+    private final String region;
+    private final Function<Object, Object> loader;
+    private final Timer refreshTimer;
+
+    public TimedCacheLoader(String region, Function<Object, Object> loader, MeterRegistry meterRegistry) {
+        this.region = region;
+        this.loader = loader;
+        this.refreshTimer = Timer.builder("cache.refresh")
+                .description("Background reloads of the entries of a cache region")
+                .tag("name", region)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Object load(Object key) {
+        return loader.apply(key);
+    }
+
+    @Override
+    public Object reload(Object key, Object oldValue) {
+        log.debug("Refreshing key {} of region {}", key, region);
+        // a null value removes the entry, e.g. when the row has been deleted
+        return refreshTimer.record(() -> loader.apply(key));
+    }
+}
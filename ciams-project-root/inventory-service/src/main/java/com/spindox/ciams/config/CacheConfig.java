@@ -2,30 +2,67 @@ package com.spindox.ciams.config;
 
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spindox.ciams.cache.TimedCacheLoader;
+import com.spindox.ciams.mapper.AssetTypeMapper;
+import com.spindox.ciams.mapper.OfficeMapper;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.OfficeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
+@Slf4j
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheRegionsProperties.class)
 public class CacheConfig {
 
-    @Bean
-    public Caffeine<Object, Object> caffeineConfig() {
-        return Caffeine.newBuilder()
-                .maximumSize(10_000)
-                .expireAfterWrite(5, TimeUnit.MINUTES);
-    }
+    public static final String OFFICE_BY_ID = "office-by-id";
+    public static final String OFFICE_BY_NAME = "office-by-name";
+    public static final String OFFICE_LIST = "office-list";
+    public static final String ASSET_TYPE_BY_ID = "asset-type-by-id";
+    public static final String ASSET_TYPE_BY_NAME = "asset-type-by-name";
+    public static final String ASSET_TYPE_LIST = "asset-type-list";
+
+    public static final List<String> REGIONS = List.of(OFFICE_BY_ID, OFFICE_BY_NAME, OFFICE_LIST,
+            ASSET_TYPE_BY_ID, ASSET_TYPE_BY_NAME, ASSET_TYPE_LIST);
+
+    // key of the single entry of the list regions
+    public static final String LIST_KEY = "all";
 
     @Bean
-    public CacheManager cacheManager(Caffeine<Object, Object> caffeine) {
-        CaffeineCacheManager mgr = new CaffeineCacheManager("Offices", "AssetTypes");
-        mgr.setCaffeine(caffeine);
+    public CacheManager cacheManager(CacheRegionsProperties properties, MeterRegistry meterRegistry,
+                                     OfficeRepository officeRepository, OfficeMapper officeMapper,
+                                     AssetTypeRepository assetTypeRepository, AssetTypeMapper assetTypeMapper) {
+        // the loaders mirror the @Cacheable methods of the services, they let the regions refresh hot keys
+        Map<String, Function<Object, Object>> loaders = Map.of(
+                OFFICE_BY_ID, id -> officeRepository.findById((Long) id).map(officeMapper::toDto).orElse(null),
+                OFFICE_BY_NAME, name -> officeRepository.findOfficeByName((String) name).map(officeMapper::toDto).orElse(null),
+                OFFICE_LIST, key -> officeMapper.toDto(officeRepository.findAll()),
+                ASSET_TYPE_BY_ID, id -> assetTypeRepository.findById((Long) id).map(assetTypeMapper::toDto).orElse(null),
+                ASSET_TYPE_BY_NAME, name -> assetTypeMapper.toDto(assetTypeRepository.findAssetTypeByNameOrderByName((String) name)),
+                ASSET_TYPE_LIST, key -> assetTypeMapper.toDto(assetTypeRepository.findAll())
+        );
+
+        CaffeineCacheManager mgr = new CaffeineCacheManager();
+        for (String region : REGIONS) {
+            String spec = properties.getRegions().getOrDefault(region, properties.getDefaultSpec());
+            log.info("Cache region {} with spec {}", region, spec);
+            // statistics are always recorded, they are published per region by the actuator
+            mgr.registerCustomCache(region, Caffeine.from(spec).recordStats()
+                    .build(new TimedCacheLoader(region, loaders.get(region), meterRegistry)));
+        }
+        // only the configured regions exist
+        mgr.setCacheNames(List.of());
         return mgr;
     }
 }
@@ -0,0 +1,19 @@
+package com.spindox.ciams.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caffeine specification of every cache region, e.g. "maximumSize=1000,expireAfterWrite=1h".
+ * Regions without a specification use the default one
+ */
+@Data
+@ConfigurationProperties(prefix = "ciams.cache")
+public class CacheRegionsProperties {
+
+    private String defaultSpec = "maximumSize=10000,refreshAfterWrite=10m,expireAfterWrite=1h";
+    private Map<String, String> regions = new LinkedHashMap<>();
+}
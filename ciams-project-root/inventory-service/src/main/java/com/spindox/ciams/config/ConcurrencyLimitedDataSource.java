@@ -0,0 +1,124 @@
+package com.spindox.ciams.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Data source letting at most as many threads as the connections of the pool hold a connection.
+ * The other threads wait in a fair queue for at most the max wait, then get a SQLTransientConnectionException.
+ * A permit is taken when the connection is borrowed and given back when it is closed, so the repositories,
+ * the JDBC templates and the transactions are all limited, whatever the number of request threads.
+ * The time spent in the queue is published as the "inventory.db.queue" timer
+ */
+@Slf4j
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final Duration maxWait;
+
+    private volatile Timer queueTimer;
+    private volatile Counter rejected;
+
+    public ConcurrencyLimitedDataSource(DataSource target, int maxConcurrency, Duration maxWait) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return limited(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return limited(() -> super.getConnection(username, password));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        queueTimer = Timer.builder("inventory.db.queue")
+                .description("Time spent waiting for a database permit before borrowing a connection")
+                .register(registry);
+        rejected = Counter.builder("inventory.db.queue.rejected")
+                .description("Requests for a connection given up after the max wait")
+                .register(registry);
+        Gauge.builder("inventory.db.queue.waiting", permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a database permit")
+                .register(registry);
+        Gauge.builder("inventory.db.queue.in-use", permits, semaphore -> maxConcurrency - semaphore.availablePermits())
+                .description("Database permits held")
+                .register(registry);
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        } finally {
+            if (queueTimer != null) {
+                queueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (!acquired) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            log.warn("No database permit within {}, {} threads waiting", maxWait, permits.getQueueLength());
+            throw new SQLTransientConnectionException("No database connection available within " + maxWait);
+        }
+    }
+
+    // the permit goes back when the connection is closed, or right away if it can't be borrowed
+    private Connection limited(ConnectionSupplier supplier) throws SQLException {
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
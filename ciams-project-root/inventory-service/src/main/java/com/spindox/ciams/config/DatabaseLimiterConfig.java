@@ -0,0 +1,55 @@
+package com.spindox.ciams.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Puts a {@link ConcurrencyLimitedDataSource} in front of the connection pool.
+ * With virtual threads the request threads are not bounded anymore by the Tomcat pool,
+ * the limiter makes the requests queue for the database in order and with a deadline
+ * instead of piling up on the pool
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "ciams.db.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class DatabaseLimiterConfig {
+
+    // static, the post processor must not make the configuration be created before the data source
+    @Bean
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource) {
+                    return bean;
+                }
+                // 0 sizes the limiter to the connection pool
+                int maxConcurrency = environment.getProperty("ciams.db.limiter.max-concurrency", Integer.class, 0);
+                if (maxConcurrency <= 0) {
+                    maxConcurrency = bean instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+                }
+                Duration maxWait = environment.getProperty("ciams.db.limiter.max-wait", Duration.class, Duration.ofSeconds(5));
+                log.info("Database access limited to {} concurrent connections, max wait {}", maxConcurrency, maxWait);
+                return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, maxWait);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder databaseLimiterMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                limited.bindTo(registry);
+            }
+        };
+    }
+}
@@ -5,10 +5,14 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -48,6 +52,28 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    //409, a unique or foreign key constraint refused the write, e.g. a duplicate serial number
+    @ExceptionHandler({DataIntegrityViolationException.class})
+    public ResponseEntity<MessageResponseDTO> handleConflictException(DataIntegrityViolationException ex) throws Exception {
+        // the cause names the tables and constraints of the database, it's logged and not returned
+        log.info("GlobalExceptionHandler - DataIntegrityViolationException: "+ex.getMostSpecificCause().getMessage());
+        return buildErrorResponse("The request conflicts with the current data, e.g. a duplicate serial number", HttpStatus.CONFLICT);
+    }
+
+    //412, the resource has changed since the version given with If-Match, or during the write
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    public ResponseEntity<MessageResponseDTO> handlePreconditionFailedException(Exception ex) throws Exception {
+        log.info("GlobalExceptionHandler - OptimisticLockingFailureException: "+ex.getMessage());
+        return buildErrorResponse("The resource has been changed by another request, read it again", HttpStatus.PRECONDITION_FAILED);
+    }
+
+    //503, no database connection within the max wait of the limiter or of the pool
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<MessageResponseDTO> handleUnavailableException(Exception ex) throws Exception {
+        log.warn("GlobalExceptionHandler - UnavailableException: "+ex.getMessage());
+        return buildErrorResponse("Service temporarily unavailable, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     private ResponseEntity<MessageResponseDTO> buildErrorResponse(String message, HttpStatus status) throws Exception {
         MessageResponseDTO response = new MessageResponseDTO(message, status.value());
         return new ResponseEntity<MessageResponseDTO>(response, status);
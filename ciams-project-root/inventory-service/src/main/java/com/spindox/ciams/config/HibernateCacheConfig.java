@@ -0,0 +1,64 @@
+package com.spindox.ciams.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Regions of the Hibernate second-level cache, JCache backed by Caffeine.
+ * Only the reference entities are cached, the assets are cached as DTOs by the AssetCache
+ */
+@Slf4j
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String OFFICE = "office";
+    public static final String ASSET_TYPE = "asset-type";
+    public static final String SOFTWARE_LICENSE = "software-license";
+
+    public static final List<String> ENTITY_REGIONS = List.of(OFFICE, ASSET_TYPE, SOFTWARE_LICENSE);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${ciams.cache.hibernate.maximum-size:10000}") long maximumSize,
+                                              @Value("${ciams.cache.hibernate.expire-after-write:1h}") Duration expireAfterWrite) {
+        // a cache manager of its own for every application context, they must not share the entities
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("ciams-hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        CaffeineConfiguration<Object, Object> bounded = new CaffeineConfiguration<>();
+        bounded.setMaximumSize(OptionalLong.of(maximumSize));
+        bounded.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        bounded.setStatisticsEnabled(true);
+        for (String region : ENTITY_REGIONS) {
+            cacheManager.createCache(region, bounded);
+        }
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, bounded);
+
+        // the last update of every table, it must outlive the cached query results
+        CaffeineConfiguration<Object, Object> timestamps = new CaffeineConfiguration<>();
+        timestamps.setStatisticsEnabled(true);
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, timestamps);
+
+        log.info("Second-level cache regions {}", cacheManager.getCacheNames());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
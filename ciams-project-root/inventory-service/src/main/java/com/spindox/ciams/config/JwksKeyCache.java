@@ -0,0 +1,120 @@
+package com.spindox.ciams.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Public keys of the auth service, read from its JSON Web Key Set and kept in memory by key id.
+ * The tokens are verified locally with them, without a call to the auth service per request.
+ * The key set is read again on a fixed interval, shorter than the key rotation of the auth service,
+ * which publishes the next key one rotation in advance. A key id still unknown reads the key set again,
+ * at most once per min refetch interval, so forged key ids can't flood the auth service
+ */
+@Slf4j
+@Component
+public class JwksKeyCache {
+
+    private final RestClient restClient;
+    private final String jwksUri;
+    private final long minRefetchNanos;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    // guards the fetches and their time, a request thread may wait on it during a fetch of up to the HTTP timeouts
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private long fetchedAt;
+    private boolean fetched;
+
+    public JwksKeyCache(RestClient.Builder restClientBuilder,
+                        @Value("${ciams.auth.token.jwks-uri:http://localhost:8081/.well-known/jwks.json}") String jwksUri,
+                        @Value("${ciams.auth.token.jwks-min-refetch-interval:30s}") Duration minRefetchInterval) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofSeconds(2));
+        requestFactory.setReadTimeout(Duration.ofSeconds(2));
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.jwksUri = jwksUri;
+        this.minRefetchNanos = minRefetchInterval.toNanos();
+    }
+
+    /**
+     * Key verifying the signatures made with a key id, read from memory when it is known
+     *
+     * @param kid the key id of the token header
+     * @return the public key, or null if the auth service doesn't publish it
+     */
+    public PublicKey publicKey(String kid) {
+        PublicKey key = keys.get(kid);
+        if (key != null) {
+            return key;
+        }
+        fetchLock.lock();
+        try {
+            key = keys.get(kid);
+            if (key == null && (!fetched || System.nanoTime() - fetchedAt >= minRefetchNanos)) {
+                fetch();
+                key = keys.get(kid);
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+        return key;
+    }
+
+    /**
+     * Reads the key set again, the keys not published anymore are forgotten.
+     * When the auth service can't be reached the known keys are kept
+     */
+    @Scheduled(fixedDelayString = "${ciams.auth.token.jwks-refresh-interval:10m}",
+            initialDelayString = "${ciams.auth.token.jwks-refresh-interval:10m}")
+    public void refresh() {
+        fetchLock.lock();
+        try {
+            fetch();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void fetch() {
+        fetched = true;
+        fetchedAt = System.nanoTime();
+        try {
+            JsonNode jwks = restClient.get().uri(jwksUri).retrieve().body(JsonNode.class);
+            Map<String, PublicKey> fetchedKeys = new HashMap<>();
+            if (jwks != null) {
+                for (JsonNode jwk : jwks.path("keys")) {
+                    if ("RSA".equals(jwk.path("kty").asText()) && jwk.hasNonNull("kid")) {
+                        fetchedKeys.put(jwk.get("kid").asText(), rsaKey(jwk));
+                    }
+                }
+            }
+            keys = Map.copyOf(fetchedKeys);
+            log.debug("{} token keys read from {}", fetchedKeys.size(), jwksUri);
+        } catch (RestClientException | GeneralSecurityException | IllegalArgumentException e) {
+            log.warn("Token keys can't be read from {}, {} known keys kept: {}", jwksUri, keys.size(), e.getMessage());
+        }
+    }
+
+    private static PublicKey rsaKey(JsonNode jwk) throws GeneralSecurityException {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+        BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+        return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent));
+    }
+}
@@ -1,27 +1,48 @@
 package com.spindox.ciams.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import java.time.Duration;
 
 @Configuration
 class SecurityConfig {
 
+    // the tokens of the auth service come first, Basic with the in-memory users stays as a fallback.
+    // The reads are public, the writes take the writer role: anyone can sign up to the auth service
+    // and get a token, the writer role is only given by an admin through the bulk provisioning
     @Bean
-    SecurityFilterChain basic(HttpSecurity http) throws Exception {
+    SecurityFilterChain basic(HttpSecurity http, JwksKeyCache jwksKeyCache, ObjectMapper objectMapper,
+                              @Value("${ciams.auth.token.issuer:ciams-auth}") String issuer,
+                              @Value("${ciams.auth.token.audience:ciams-inventory}") String audience,
+                              @Value("${ciams.auth.writer-role:INVENTORY_WRITER}") String writerRole,
+                              @Value("${ciams.auth.token.clock-skew:1m}") Duration clockSkew,
+                              @Value("${ciams.auth.basic.enabled:true}") boolean basicEnabled) throws Exception {
             http.csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.GET, "/**").permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
-                        .anyRequest().authenticated()
+                        .anyRequest().hasRole(writerRole)
                 )
-                .httpBasic(Customizer.withDefaults());
+                .addFilterBefore(new BearerTokenFilter(jwksKeyCache, objectMapper, issuer, audience, clockSkew),
+                        BasicAuthenticationFilter.class);
+            if (basicEnabled) {
+                http.httpBasic(Customizer.withDefaults());
+            } else {
+                http.exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
+            }
 
         return http.build();
     }
 }
-
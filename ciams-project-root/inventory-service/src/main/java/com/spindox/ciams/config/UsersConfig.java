@@ -16,11 +16,11 @@ class UsersConfig {
         return new InMemoryUserDetailsManager(
                 User.withUsername("user1")
                         .password(encoder.encode("password1"))
-                        .roles("USER")
+                        .roles("USER", "INVENTORY_WRITER")
                         .build(),
                 User.withUsername("user2")
                         .password(encoder.encode("password2"))
-                        .roles("USER")
+                        .roles("USER", "INVENTORY_WRITER")
                         .build()
         );
     }
@@ -1,13 +1,23 @@
 package com.spindox.ciams.controller;
 
 import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.dto.AssetImportResultDto;
+import com.spindox.ciams.dto.AssetMoveDto;
+import com.spindox.ciams.dto.AssetMoveResultDto;
+import com.spindox.ciams.dto.LicenseAssignmentDto;
+import com.spindox.ciams.dto.LicenseAssignmentResultDto;
+import com.spindox.ciams.dto.AssetPageDto;
+import com.spindox.ciams.dto.AssetSearchDto;
+import com.spindox.ciams.dto.FacetCountDto;
 import com.spindox.ciams.dto.OfficeDto;
 import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.service.AssetCommandService;
+import com.spindox.ciams.service.AssetDocumentService;
+import com.spindox.ciams.service.AssetImportService;
 import com.spindox.ciams.service.AssetService;
-import com.spindox.ciams.service.AssetTypeService;
-import com.spindox.ciams.service.OfficeService;
 import com.spindox.ciams.service.SoftwareLicenceService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -18,9 +28,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -33,13 +52,16 @@ public class AssetController {
     private AssetService service;
 
     @Autowired
-    private OfficeService officeService;
+    private SoftwareLicenceService licenseService;
 
     @Autowired
-    private AssetTypeService assetTypeService;
+    private AssetImportService importService;
 
     @Autowired
-    private SoftwareLicenceService licenseService;
+    private AssetCommandService commandService;
+
+    @Autowired
+    private AssetDocumentService documentService;
 
     /**
      * Retrieves a single asset by ID.
@@ -78,10 +100,66 @@ public class AssetController {
     @GetMapping("/{id}")
     public ResponseEntity<AssetDto> getAssetById(@PathVariable Long id) throws EntityNotFoundException {
         log.info("get an asset by ID {}", id);
-        return ResponseEntity.ok(service.getAssetById(id));
+        AssetDto asset = service.getAssetById(id);
+        // a matching If-None-Match is answered with 304, the asset is not serialized
+        return ResponseEntity.ok().eTag(ETags.of(asset.getVersion(), asset.getRevision())).body(asset);
 
     }
 
+    /**
+     * Suggests the serial numbers starting with a prefix, for the autocomplete of the clients.
+     *
+     * @param prefix the beginning of the serial numbers, the case is ignored
+     * @param limit  the maximum number of serial numbers to return, capped server side
+     * @return 200 with the serial numbers in alphabetical order,
+     *         400 if the prefix is empty
+     * @throws BadRequestException if the prefix is empty
+     */
+    @Operation(
+            summary = "Suggest serial numbers",
+            description = "Returns the serial numbers starting with the given prefix, ignoring the case, in alphabetical order.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            parameters = {
+                    @Parameter(
+                            name = "prefix",
+                            description = "Beginning of the serial numbers",
+                            required = true,
+                            schema = @Schema(type = "string")
+                    ),
+                    @Parameter(
+                            name = "limit",
+                            description = "Maximum number of serial numbers to return",
+                            schema = @Schema(type = "integer", format = "int32")
+                    )
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Serial numbers successfully retrieved",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(type = "string"))
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Empty prefix",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/serialnumber/suggest")
+    public ResponseEntity<List<String>> suggestSerialNumbers(@RequestParam String prefix,
+                                                            @RequestParam(required = false) Integer limit) throws BadRequestException {
+        log.info("suggest serial numbers starting with {}", prefix);
+        return ResponseEntity.ok(service.suggestSerialNumbers(prefix, limit));
+    }
+
     /**
      * Retrieves a single asset by serial number.
      *
@@ -126,34 +204,242 @@ public class AssetController {
     public ResponseEntity<AssetDto> getAssetBySerialNumber(@PathVariable String serialnumber) throws EntityNotFoundException {
 
         log.info("get an asset by serial number {}", serialnumber);
-        return ResponseEntity.ok(service.getAssetBySerialNumber(serialnumber));
+        AssetDto asset = service.getAssetBySerialNumber(serialnumber);
+        return ResponseEntity.ok().eTag(ETags.of(asset.getVersion(), asset.getRevision())).body(asset);
 
     }
 
     /**
-     * Retrieves all assets.
+     * Retrieves a page of assets using keyset pagination.
      *
-     * @return 200 with the list of AssetDto on success
-     * @throws EntityNotFoundException (not typically thrown for list endpoints; consider returning 204 instead)
+     * @param limit  the maximum number of assets to return, capped server side
+     * @param cursor the continuation token returned by the previous page
+     * @param sort   the sort key, id or acquisitionDate
+     * @return 200 with the page of AssetDto and the link to the next page,
+     *         400 if the sort or the cursor are invalid
+     * @throws BadRequestException if the sort or the cursor are invalid
      */
     @Operation(
-            summary = "Get all assets",
-            description = "Fetches all assets and returns them as a list.",
+            summary = "Get a page of assets",
+            description = "Fetches a page of assets ordered by id or acquisition date. Pass the returned cursor to get the next page.",
+            parameters = {
+                    @Parameter(
+                            name = "limit",
+                            description = "Maximum number of assets in the page",
+                            schema = @Schema(type = "integer", format = "int32")
+                    ),
+                    @Parameter(
+                            name = "cursor",
+                            description = "Continuation token returned by the previous page",
+                            schema = @Schema(type = "string")
+                    ),
+                    @Parameter(
+                            name = "sort",
+                            description = "Sort key",
+                            schema = @Schema(type = "string", allowableValues = {"id", "acquisitionDate"}, defaultValue = "id")
+                    )
+            },
             responses = {
                     @ApiResponse(
                             responseCode = "200",
                             description = "Assets successfully retrieved",
                             content = @Content(
                                     mediaType = "application/json",
-                                    array = @ArraySchema(schema = @Schema(implementation = AssetDto.class))
+                                    schema = @Schema(implementation = AssetPageDto.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid sort or cursor",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/")
-    public ResponseEntity<List<AssetDto>> getAllAssets() throws EntityNotFoundException {
-        log.info("get all assets");
-        return ResponseEntity.ok(service.getAllAssets());
+    public ResponseEntity<AssetPageDto> getAllAssets(@RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "id") String sort) throws BadRequestException {
+        log.info("get assets page, limit {} cursor {} sort {}", limit, cursor, sort);
+        AssetPageDto page = service.getAssetsPage(limit, cursor, sort);
+        if (page.getNextCursor() != null) {
+            page.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString());
+        }
+        return ResponseEntity.ok(page);
+    }
+
+
+    /**
+     * Searches the assets and counts the matches by office, asset type and license.
+     *
+     * @param officeId      the offices of the assets, repeat the parameter to match any of many
+     * @param assetTypeId   the types of the assets, repeat the parameter to match any of many
+     * @param licenseId     the licenses installed on the assets, repeat the parameter to match any of many
+     * @param acquiredFrom  the first acquisition date, inclusive
+     * @param acquiredTo    the last acquisition date, inclusive
+     * @param serialNumber  the beginning of the serial numbers, the case is ignored
+     * @param limit         the maximum number of assets to return, capped server side
+     * @param cursor        the continuation token returned by the previous page
+     * @return 200 with the page of AssetDto ordered by id, the number of matches, the counts and the link to the next page,
+     *         400 if the date range or the cursor are invalid
+     * @throws BadRequestException if the date range or the cursor are invalid
+     */
+    @Operation(
+            summary = "Search assets",
+            description = "Filters the assets by office, asset type, installed license, acquisition date range and serial number prefix. " +
+                    "The response has a page of assets ordered by id and the number of matching assets by office, asset type and license; " +
+                    "the counts of a dimension ignore the filters on that dimension. Pass the returned cursor to get the next page.",
+            parameters = {
+                    @Parameter(name = "officeId", description = "Office of the assets, repeatable", schema = @Schema(type = "integer", format = "int64")),
+                    @Parameter(name = "assetTypeId", description = "Type of the assets, repeatable", schema = @Schema(type = "integer", format = "int64")),
+                    @Parameter(name = "licenseId", description = "License installed on the assets, repeatable", schema = @Schema(type = "integer", format = "int64")),
+                    @Parameter(name = "acquiredFrom", description = "First acquisition date, inclusive, ISO-8601", schema = @Schema(type = "string", format = "date-time")),
+                    @Parameter(name = "acquiredTo", description = "Last acquisition date, inclusive, ISO-8601", schema = @Schema(type = "string", format = "date-time")),
+                    @Parameter(name = "serialNumber", description = "Beginning of the serial numbers", schema = @Schema(type = "string")),
+                    @Parameter(name = "limit", description = "Maximum number of assets in the page", schema = @Schema(type = "integer", format = "int32")),
+                    @Parameter(name = "cursor", description = "Continuation token returned by the previous page", schema = @Schema(type = "string"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Assets successfully searched",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = AssetSearchDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid date range or cursor",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/search")
+    public ResponseEntity<AssetSearchDto> searchAssets(@RequestParam(required = false) List<Long> officeId,
+                                                       @RequestParam(required = false) List<Long> assetTypeId,
+                                                       @RequestParam(required = false) List<Long> licenseId,
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime acquiredFrom,
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime acquiredTo,
+                                                       @RequestParam(required = false) String serialNumber,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String cursor) throws BadRequestException {
+        log.info("search assets, offices {} types {} licenses {} acquired from {} to {} serial number {}",
+                officeId, assetTypeId, licenseId, acquiredFrom, acquiredTo, serialNumber);
+        AssetSearchDto search = service.searchAssets(officeId, assetTypeId, licenseId,
+                acquiredFrom == null ? null : Date.from(acquiredFrom.toInstant()),
+                acquiredTo == null ? null : Date.from(acquiredTo.toInstant()),
+                serialNumber, limit, cursor);
+        if (search.getNextCursor() != null) {
+            search.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", search.getNextCursor())
+                    .toUriString());
+        }
+        return ResponseEntity.ok(search);
+    }
+
+    /**
+     * Retrieves the number of assets of every office.
+     *
+     * @return 200 with the counts, the largest first
+     */
+    @Operation(
+            summary = "Count the assets by office",
+            description = "Returns the number of assets of every office. The counts are kept up to date by the writes, they are not computed on request.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Counts successfully retrieved",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = FacetCountDto.class))
+                            )
+                    )
+            }
+    )
+    @GetMapping("/counts/offices")
+    public ResponseEntity<List<FacetCountDto>> countAssetsByOffice() {
+        log.info("countAssetsByOffice");
+        return ResponseEntity.ok(service.countAssetsByOffice());
+    }
+
+    /**
+     * Retrieves the number of assets of every asset type.
+     *
+     * @return 200 with the counts, the largest first
+     */
+    @Operation(
+            summary = "Count the assets by asset type",
+            description = "Returns the number of assets of every asset type. The counts are kept up to date by the writes, they are not computed on request.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Counts successfully retrieved",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = FacetCountDto.class))
+                            )
+                    )
+            }
+    )
+    @GetMapping("/counts/asset-types")
+    public ResponseEntity<List<FacetCountDto>> countAssetsByAssetType() {
+        log.info("countAssetsByAssetType");
+        return ResponseEntity.ok(service.countAssetsByAssetType());
+    }
+
+    /**
+     * Retrieves the number of installations of every software license.
+     *
+     * @return 200 with the counts, the largest first
+     */
+    @Operation(
+            summary = "Count the installations by software license",
+            description = "Returns the number of assets every software license is installed on. The counts are kept up to date by the writes, they are not computed on request.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Counts successfully retrieved",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = FacetCountDto.class))
+                            )
+                    )
+            }
+    )
+    @GetMapping("/counts/licenses")
+    public ResponseEntity<List<FacetCountDto>> countInstallationsByLicense() {
+        log.info("countInstallationsByLicense");
+        return ResponseEntity.ok(service.countInstallationsByLicense());
+    }
+
+    /**
+     * Exports all the assets as newline-delimited JSON.
+     *
+     * @return 200 with a stream of AssetDto, one per line
+     */
+    @Operation(
+            summary = "Export all assets",
+            description = "Streams every asset with its office, type and licenses as newline-delimited JSON.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Assets stream",
+                            content = @Content(
+                                    mediaType = "application/x-ndjson",
+                                    schema = @Schema(implementation = AssetDto.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportAssets() {
+        log.info("export all assets");
+        StreamingResponseBody body = out -> service.exportAssets(out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
 
@@ -204,9 +490,89 @@ public class AssetController {
     public ResponseEntity<AssetDto> createAsset(@RequestBody AssetDto assetDto) throws EntityNotFoundException, BadRequestException {
         log.info("create a new asset {}", assetDto);
         AssetIsNotValid(assetDto);
-        officeService.getOfficeById(assetDto.getOffice().getId());
-        assetTypeService.getAssetTypeById(assetDto.getAssetType().getId());
-        return ResponseEntity.ok(service.saveAsset(assetDto));
+        return ResponseEntity.ok(commandService.createAsset(assetDto));
+    }
+
+
+    /**
+     * Imports many assets in one request.
+     *
+     * @param in the request body, a JSON array of AssetDto or newline-delimited AssetDto
+     * @return 200 with the number of imported assets and the rejected rows,
+     *         400 if the body is not valid JSON,
+     *         401 if unauthorized
+     * @throws IOException if the body can't be read or is not valid JSON
+     */
+    @Operation(
+            summary = "Import assets in bulk",
+            description = "Imports the assets of a JSON array or of a newline-delimited JSON stream. The rows are committed in chunks and the rejected ones are reported with their position.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Assets to import",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = AssetDto.class))
+                    )
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Import completed",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = AssetImportResultDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid request body",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping(value = "/bulk", consumes = {"application/json", "application/x-ndjson"})
+    public ResponseEntity<AssetImportResultDto> importAssets(InputStream in) throws IOException {
+        log.info("import assets in bulk");
+        return ResponseEntity.ok(importService.importAssets(in));
+    }
+
+
+    /**
+     * Writes the documents of the asset read model again from the tables.
+     *
+     * @return 200 with the number of documents written,
+     *         401 if unauthorized
+     */
+    @Operation(
+            summary = "Rebuild the asset read model",
+            description = "Writes the documents served by the asset read endpoints again from the tables, in chunks committed one by one, and deletes the documents of the assets that don't exist anymore.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Number of documents written",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = Long.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping("/read-model/rebuild")
+    public ResponseEntity<Long> rebuildReadModel() {
+        log.info("rebuild the asset read model");
+        return ResponseEntity.ok(documentService.rebuild());
     }
 
 
@@ -253,16 +619,66 @@ public class AssetController {
     )
 
     @PutMapping("/move")
-    public ResponseEntity<AssetDto> moveAsset(@RequestParam Long assetId, @RequestParam Long officeId) throws EntityNotFoundException {
+    public ResponseEntity<AssetDto> moveAsset(@RequestParam Long assetId, @RequestParam Long officeId) throws EntityNotFoundException, BadRequestException {
 
         log.info("move asset {}", assetId);
-        AssetDto assetDto;
-        OfficeDto officeDto;
-        officeDto = officeService.getOfficeById(officeId);
-        assetDto = service.getAssetById(assetId);
-        assetDto.setOffice(officeDto);
+        return ResponseEntity.ok(commandService.moveAsset(assetId, officeId));
+    }
+
 
-        return ResponseEntity.ok(service.saveAsset(assetDto));
+    /**
+     * Moves many assets to a different office in one update.
+     *
+     * @param move the destination office and the assets to move, selected by ids, serial numbers or current office
+     * @return 200 with the number of moved assets on success,
+     *         400 if the request body is invalid,
+     *         404 if the office does not exist,
+     *         401 if unauthorized
+     * @throws EntityNotFoundException if the office is not found
+     * @throws BadRequestException if the request body is invalid
+     */
+    @Operation(
+            summary = "Move many assets to a different office",
+            description = "Moves the assets selected by ids, serial numbers or current office to the office identified by officeId and returns how many assets were moved.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Destination office and assets to move",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = AssetMoveDto.class)
+                    )
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Assets successfully moved",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = AssetMoveResultDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid request body",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Office not found",
+                            content = @Content
+                    )
+            }
+    )
+    @PutMapping("/bulk-move")
+    public ResponseEntity<AssetMoveResultDto> moveAssets(@RequestBody AssetMoveDto move) throws EntityNotFoundException, BadRequestException {
+        log.info("move assets {}", move);
+        return ResponseEntity.ok(new AssetMoveResultDto(move.getOfficeId(), service.moveAssets(move)));
     }
 
 
@@ -311,15 +727,63 @@ public class AssetController {
     @PutMapping("/install-software")
     public ResponseEntity<AssetDto> installSoftwareAsset(@RequestParam Long assetId, @RequestParam Long licenseId) throws EntityNotFoundException {
         log.info("install software asset {}", assetId);
-        AssetDto assetDto;
-        SoftwareLicenseDto softwareLicenseDto;
-        softwareLicenseDto = licenseService.getLicenseById(licenseId);
-        assetDto = service.getAssetById(assetId);
+        return ResponseEntity.ok(commandService.installSoftware(assetId, licenseId));
+    }
 
-        if (!assetDto.getSoftwareLicenses().contains(softwareLicenseDto)){
-            assetDto.getSoftwareLicenses().add(softwareLicenseDto);
-        }
-        return ResponseEntity.ok(service.saveAsset(assetDto));
+
+    /**
+     * Installs (assigns) a software license on many assets.
+     *
+     * @param assignment the license and the assets
+     * @return 200 with the number of installations added on success,
+     *         400 if the request body is invalid,
+     *         404 if the license does not exist,
+     *         401 if unauthorized
+     * @throws EntityNotFoundException if the license is not found
+     * @throws BadRequestException if the request body is invalid
+     */
+    @Operation(
+            summary = "Install software on many assets",
+            description = "Installs the software license on every listed asset with a single insert. Assets that already have it are skipped.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "License and assets",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = LicenseAssignmentDto.class)
+                    )
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Software successfully installed",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = LicenseAssignmentResultDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid request body",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "License not found",
+                            content = @Content
+                    )
+            }
+    )
+    @PutMapping("/bulk-install-software")
+    public ResponseEntity<LicenseAssignmentResultDto> installSoftwareOnAssets(@RequestBody LicenseAssignmentDto assignment) throws EntityNotFoundException, BadRequestException {
+        log.info("install software on assets {}", assignment);
+        return ResponseEntity.ok(new LicenseAssignmentResultDto(assignment.getLicenseId(), service.installSoftwareOnAssets(assignment)));
     }
 
 
@@ -367,12 +831,63 @@ public class AssetController {
     @PutMapping("/remove-software")
     public ResponseEntity<AssetDto> removeSoftwareAsset(@RequestParam Long assetId, @RequestParam Long licenseId) throws EntityNotFoundException {
         log.info("remove software asset {}", assetId);
-        AssetDto assetDto;
-        SoftwareLicenseDto softwareLicenseDto;
-        softwareLicenseDto = licenseService.getLicenseById(licenseId);
-        assetDto = service.getAssetById(assetId);
-        assetDto.getSoftwareLicenses().remove(softwareLicenseDto);
-        return ResponseEntity.ok(service.saveAsset(assetDto));
+        return ResponseEntity.ok(commandService.removeSoftware(assetId, licenseId));
+    }
+
+
+    /**
+     * Removes (uninstalls) a software license from many assets.
+     *
+     * @param assignment the license and the assets
+     * @return 200 with the number of installations removed on success,
+     *         400 if the request body is invalid,
+     *         404 if the license does not exist,
+     *         401 if unauthorized
+     * @throws EntityNotFoundException if the license is not found
+     * @throws BadRequestException if the request body is invalid
+     */
+    @Operation(
+            summary = "Remove software from many assets",
+            description = "Uninstalls the software license from every listed asset with a single delete.",
+            security = { @SecurityRequirement(name = "basicAuth") },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "License and assets",
+                    required = true,
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = LicenseAssignmentDto.class)
+                    )
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Software successfully removed",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = LicenseAssignmentResultDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid request body",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "License not found",
+                            content = @Content
+                    )
+            }
+    )
+    @PutMapping("/bulk-remove-software")
+    public ResponseEntity<LicenseAssignmentResultDto> removeSoftwareFromAssets(@RequestBody LicenseAssignmentDto assignment) throws EntityNotFoundException, BadRequestException {
+        log.info("remove software from assets {}", assignment);
+        return ResponseEntity.ok(new LicenseAssignmentResultDto(assignment.getLicenseId(), service.removeSoftwareFromAssets(assignment)));
     }
 
 
@@ -413,13 +928,18 @@ public class AssetController {
                             responseCode = "404",
                             description = "Asset not found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The asset has changed since the ETag given with If-Match",
+                            content = @Content
                     )
             }
     )
     @DeleteMapping("/{id}")
-    public ResponseEntity<AssetDto> deleteAsset(@PathVariable Long id) throws EmptyResultDataAccessException, NoSuchElementException {
+    public ResponseEntity<AssetDto> deleteAsset(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws EmptyResultDataAccessException, NoSuchElementException {
         log.info("delete asset {}", id);
-        service.deleteAsset(id);
+        service.deleteAsset(id, ETags.ifMatch(ifMatch, AssetDto.class, id));
         return ResponseEntity.ok().build();
 
     }
@@ -1,5 +1,7 @@
 package com.spindox.ciams.controller;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CollectionVersions;
 import com.spindox.ciams.dto.AssetTypeDto;
 import com.spindox.ciams.service.AssetTypeService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,8 +15,10 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -26,6 +30,9 @@ public class AssetTypeController {
     @Autowired
     private AssetTypeService service;
 
+    @Autowired
+    private CollectionVersions collectionVersions;
+
     /**
      * Retrieves all asset types.
      *
@@ -42,13 +49,23 @@ public class AssetTypeController {
                                     mediaType = "application/json",
                                     array = @ArraySchema(schema = @Schema(implementation = AssetTypeDto.class))
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not modified since the ETag given with If-None-Match",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/")
-    public ResponseEntity<List<AssetTypeDto>> getAllAssetTypes(){
+    public ResponseEntity<List<AssetTypeDto>> getAllAssetTypes(WebRequest request){
         log.info("Get all the Asset Types");
-        return ResponseEntity.ok(service.getAllAssetTypes());
+        // checked before the asset types are read, a poll with the current ETag reads nothing
+        String etag = collectionVersions.etag(CacheInvalidation.Type.ASSET_TYPE);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(service.getAllAssetTypes());
     }
 
     /**
@@ -92,7 +109,9 @@ public class AssetTypeController {
     @GetMapping("/{id}")
     public ResponseEntity<AssetTypeDto> getAssetTypeById(@PathVariable long id) throws  EntityNotFoundException {
         log.info("Get asset type by ID {}", id);
-        return ResponseEntity.ok(service.getAssetTypeById(id));
+        AssetTypeDto assetType = service.getAssetTypeById(id);
+        // a matching If-None-Match is answered with 304, the asset type is not serialized
+        return ResponseEntity.ok().eTag(ETags.of(assetType.getVersion())).body(assetType);
     }
 
 
@@ -234,14 +253,21 @@ public class AssetTypeController {
                             responseCode = "404",
                             description = "Asset type not found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The asset type has changed since the ETag given with If-Match",
+                            content = @Content
                     )
             }
     )
     @PutMapping("/{id}")
-    public ResponseEntity<AssetTypeDto> updateAssetType(@RequestBody AssetTypeDto assetType, @PathVariable Long id) throws BadRequestException {
+    public ResponseEntity<AssetTypeDto> updateAssetType(@RequestBody AssetTypeDto assetType, @PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws BadRequestException {
         log.info("Update an existing asset type {}", id);
         AssetTypeIsNotValid(assetType);
         AssetTypeDto newAssetType = service.getAssetTypeById(id);
+        ETags.checkIfMatch(ifMatch, newAssetType.getVersion(), AssetTypeDto.class, id);
         newAssetType.setName(assetType.getName());
         newAssetType.setDescription(assetType.getDescription());
         return ResponseEntity.ok(service.saveAssetType(newAssetType));
@@ -277,13 +303,18 @@ public class AssetTypeController {
                             responseCode = "404",
                             description = "Asset type not found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The asset type has changed since the ETag given with If-Match",
+                            content = @Content
                     )
             }
     )
     @DeleteMapping("/{id}")
-    public ResponseEntity<AssetTypeDto> deleteAssetType(@PathVariable Long id) {
+    public ResponseEntity<AssetTypeDto> deleteAssetType(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Delete an existing asset type {}", id);
-        service.deleteAssetType(id);
+        service.deleteAssetType(id, ETags.ifMatch(ifMatch, AssetTypeDto.class, id));
         return ResponseEntity.ok().build();
     }
 
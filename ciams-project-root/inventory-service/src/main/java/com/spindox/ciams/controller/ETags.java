@@ -0,0 +1,65 @@
+package com.spindox.ciams.controller;
+
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+/**
+ * Strong ETags of the single resources, built on the version of the entity.
+ * The ETag of an asset also carries the revision of its document, that changes with the office,
+ * the type and the licenses it embeds: only the version is compared by If-Match
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    static String of(Long version, Long revision) {
+        return "\"" + (version == null ? 0 : version) + "-" + (revision == null ? 0 : revision) + "\"";
+    }
+
+    /**
+     * Reads the version required by an If-Match header.
+     * Only a single strong ETag can match, a weak or a malformed one never does
+     *
+     * @param header the If-Match header
+     * @param resource the type of the resource, for the error
+     * @param id the pk of the resource, for the error
+     * @return the version, null when there is no header or it matches any version
+     */
+    static Long ifMatch(String header, Class<?> resource, Object id) {
+        if (header == null || header.isBlank() || header.trim().equals("*")) {
+            return null;
+        }
+        String tag = header.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            // the revision of an asset document, after the version
+            int revision = value.indexOf('-');
+            try {
+                return Long.valueOf(revision > 0 ? value.substring(0, revision) : value);
+            } catch (NumberFormatException e) {
+                // falls through, the ETag is not one of ours
+            }
+        }
+        throw new ObjectOptimisticLockingFailureException(resource, id);
+    }
+
+    /**
+     * Checks an If-Match header against the current version of a resource
+     *
+     * @param header the If-Match header
+     * @param current the current version of the resource
+     * @param resource the type of the resource, for the error
+     * @param id the pk of the resource, for the error
+     * @throws ObjectOptimisticLockingFailureException when the version has changed
+     */
+    static void checkIfMatch(String header, Long current, Class<?> resource, Object id) {
+        Long expected = ifMatch(header, resource, id);
+        if (expected != null && !expected.equals(current == null ? 0L : current)) {
+            throw new ObjectOptimisticLockingFailureException(resource, id);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.spindox.ciams.controller;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CollectionVersions;
 import com.spindox.ciams.config.GlobalExceptionHandler;
 import com.spindox.ciams.dto.OfficeDto;
 import com.spindox.ciams.service.OfficeService;
@@ -14,8 +16,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -31,6 +35,9 @@ public class OfficeController {
     @Autowired
     private GlobalExceptionHandler exceptionHandler;
 
+    @Autowired
+    private CollectionVersions collectionVersions;
+
 
     /**
      * Retrieves the details of an office by its identifier.
@@ -73,7 +80,9 @@ public class OfficeController {
     @GetMapping("/{id}")
     public ResponseEntity<OfficeDto> getOfficeById(@PathVariable Long id) {
         log.info("Get office by ID {}", id);
-        return ResponseEntity.ok(service.getOfficeById(id));
+        OfficeDto office = service.getOfficeById(id);
+        // a matching If-None-Match is answered with 304, the office is not serialized
+        return ResponseEntity.ok().eTag(ETags.of(office.getVersion())).body(office);
     }
 
     /**
@@ -137,13 +146,23 @@ public class OfficeController {
                                     mediaType = "application/json",
                                     schema = @Schema(implementation = OfficeDto.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not modified since the ETag given with If-None-Match",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/")
-    public ResponseEntity<List<OfficeDto>> getAllOffices() {
+    public ResponseEntity<List<OfficeDto>> getAllOffices(WebRequest request) {
         log.info("Get all offices");
-        return ResponseEntity.ok(service.getAllOffices());
+        // checked before the offices are read, a poll with the current ETag reads nothing
+        String etag = collectionVersions.etag(CacheInvalidation.Type.OFFICE);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(service.getAllOffices());
     }
 
     /**
@@ -243,14 +262,21 @@ public class OfficeController {
                             responseCode = "401",
                             description = "Unauthorized",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The office has changed since the ETag given with If-Match",
+                            content = @Content
                     )
             }
     )
     @PutMapping("/{id}")
-    public ResponseEntity<OfficeDto> updateOffice(@RequestBody OfficeDto office, @PathVariable Long id) throws BadRequestException {
+    public ResponseEntity<OfficeDto> updateOffice(@RequestBody OfficeDto office, @PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws BadRequestException {
         log.info("Update office {}", office);
         OfficeIsNotValid(office);
         OfficeDto newOffice = service.getOfficeById(id);
+        ETags.checkIfMatch(ifMatch, newOffice.getVersion(), OfficeDto.class, id);
         newOffice.setName(office.getName());
         return ResponseEntity.ok(service.saveOffice(newOffice));
     }
@@ -290,13 +316,18 @@ public class OfficeController {
                             description = "Unauthorized",
                             content = @Content
                     )
-
+,
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The office has changed since the ETag given with If-Match",
+                            content = @Content
+                    )
             }
     )
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteOffice(@PathVariable Long id) throws EmptyResultDataAccessException, NoSuchElementException{
+    public ResponseEntity<Void> deleteOffice(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws EmptyResultDataAccessException, NoSuchElementException{
         log.info("Delete office {}", id);
-        service.deleteOffice(id);
+        service.deleteOffice(id, ETags.ifMatch(ifMatch, OfficeDto.class, id));
         return ResponseEntity.ok().build();
     }
 
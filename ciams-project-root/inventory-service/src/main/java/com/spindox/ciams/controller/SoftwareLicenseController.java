@@ -1,6 +1,9 @@
 package com.spindox.ciams.controller;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CollectionVersions;
 import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.dto.SoftwareLicensePageDto;
 import com.spindox.ciams.service.SoftwareLicenceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,9 +16,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -27,6 +39,9 @@ public class SoftwareLicenseController {
     @Autowired
     SoftwareLicenceService service;
 
+    @Autowired
+    private CollectionVersions collectionVersions;
+
 
     /**
      * Retrieves the details of a software license by its identifier.
@@ -69,21 +84,24 @@ public class SoftwareLicenseController {
     @GetMapping("/{id}")
     public ResponseEntity<SoftwareLicenseDto> getSoftwareLicenseById(@PathVariable Long id) {
         log.info("getSoftwareLicenseById {}", id);
-        return ResponseEntity.ok(service.getLicenseById(id));
+        SoftwareLicenseDto license = service.getLicenseById(id);
+        // a matching If-None-Match is answered with 304, the license is not serialized
+        return ResponseEntity.ok().eTag(ETags.of(license.getVersion())).body(license);
     }
 
 
     /**
-     * Retrieves software licenses by name.
+     * Retrieves software licenses by name, ignoring the case, the best matches first.
      *
-     * @param name the name (or partial name) of the software license to search for
+     * @param name  the name (or partial name) of the software license to search for
+     * @param limit the maximum number of licenses to return, capped server side
      * @return 200 with a list of SoftwareLicenseDto objects if matches are found,
      *         404 if no licenses match the given name,
      *         400 if the provided name is invalid
      */
     @Operation(
             summary = "Get software licenses by name",
-            description = "Returns a list of software licenses whose name matches the specified value.",
+            description = "Returns the software licenses whose name contains the specified value, ignoring the case. Names starting with the value come first, then the most similar ones.",
             parameters = {
                     @Parameter(
                             name = "name",
@@ -91,6 +109,11 @@ public class SoftwareLicenseController {
                             required = true,
                             example = "Visual Studio",
                             schema = @Schema(type = "string")
+                    ),
+                    @Parameter(
+                            name = "limit",
+                            description = "Maximum number of licenses to return",
+                            schema = @Schema(type = "integer", format = "int32")
                     )
             },
             responses = {
@@ -105,9 +128,10 @@ public class SoftwareLicenseController {
             }
     )
     @GetMapping("/name/{name}")
-    public ResponseEntity<List<SoftwareLicenseDto>> getSoftwareLicenseByName(@PathVariable String name) {
+    public ResponseEntity<List<SoftwareLicenseDto>> getSoftwareLicenseByName(@PathVariable String name,
+                                                                             @RequestParam(required = false) Integer limit) {
         log.info("getSoftwareLicenseByName {}", name);
-        return ResponseEntity.ok(service.getLicenseByName(name));
+        return ResponseEntity.ok(service.getLicenseByName(name, limit));
     }
 
     /**
@@ -126,38 +150,129 @@ public class SoftwareLicenseController {
                                     mediaType = "application/json",
                                     array = @ArraySchema(schema = @Schema(implementation = SoftwareLicenseDto.class))
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not modified since the ETag given with If-None-Match",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/")
-    public ResponseEntity<List<SoftwareLicenseDto>> getAllSoftwareLicense() {
+    public ResponseEntity<List<SoftwareLicenseDto>> getAllSoftwareLicense(WebRequest request) {
         log.info("getAllSoftwareLicense");
-        return ResponseEntity.ok(service.getAllLicenses());
+        // checked before the licenses are read, a poll with the current ETag reads nothing
+        String etag = collectionVersions.etag(CacheInvalidation.Type.SOFTWARE_LICENSE);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(service.getAllLicenses());
     }
 
     /**
-     * Retrieves all software licenses that are expiring soon.
+     * Retrieves a page of the software licenses expiring in a window, ordered by expire date.
+     * The window is either the next days, the already expired licenses or an explicit range.
      *
-     * @return 200 with a list of SoftwareLicenseDto objects representing licenses close to expiration
+     * @param days    the length of the window starting now, 30 when no other window is given
+     * @param expired true for the licenses already expired
+     * @param from    the first expire date of an explicit window, inclusive
+     * @param to      the last expire date of an explicit window, inclusive
+     * @param limit   the maximum number of licenses to return, capped server side
+     * @param cursor  the continuation token returned by the previous page
+     * @return 200 with the page of SoftwareLicenseDto and the link to the next page,
+     *         400 if the window or the cursor are invalid
+     * @throws BadRequestException if the window or the cursor are invalid
      */
     @Operation(
             summary = "Get expiring software licenses",
-            description = "Returns a list of software licenses that are approaching their expiration date.",
+            description = "Returns a page of the software licenses expiring in the next days, already expired or expiring between two dates. Pass the returned cursor to get the next page.",
+            parameters = {
+                    @Parameter(
+                            name = "days",
+                            description = "Length in days of the window starting now",
+                            schema = @Schema(type = "integer", format = "int32", defaultValue = "30")
+                    ),
+                    @Parameter(
+                            name = "expired",
+                            description = "Returns the licenses already expired",
+                            schema = @Schema(type = "boolean", defaultValue = "false")
+                    ),
+                    @Parameter(
+                            name = "from",
+                            description = "First expire date of the window, ISO date-time",
+                            schema = @Schema(type = "string", format = "date-time")
+                    ),
+                    @Parameter(
+                            name = "to",
+                            description = "Last expire date of the window, ISO date-time",
+                            schema = @Schema(type = "string", format = "date-time")
+                    ),
+                    @Parameter(
+                            name = "limit",
+                            description = "Maximum number of licenses in the page",
+                            schema = @Schema(type = "integer", format = "int32")
+                    ),
+                    @Parameter(
+                            name = "cursor",
+                            description = "Continuation token returned by the previous page",
+                            schema = @Schema(type = "string")
+                    )
+            },
             responses = {
                     @ApiResponse(
                             responseCode = "200",
-                            description = "List of expiring software licenses retrieved successfully",
+                            description = "Page of expiring software licenses retrieved successfully",
                             content = @Content(
                                     mediaType = "application/json",
-                                    array = @ArraySchema(schema = @Schema(implementation = SoftwareLicenseDto.class))
+                                    schema = @Schema(implementation = SoftwareLicensePageDto.class)
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid window or cursor",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/expiring")
-    public ResponseEntity<List<SoftwareLicenseDto>> getExpireDate() {
-        log.info("getExpireDate");
-        return ResponseEntity.ok(service.getLicenseWithExpiringDates());
+    public ResponseEntity<SoftwareLicensePageDto> getExpireDate(@RequestParam(required = false) Integer days,
+                                                                @RequestParam(defaultValue = "false") boolean expired,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String cursor) throws BadRequestException {
+        log.info("getExpireDate days {} expired {} from {} to {}", days, expired, from, to);
+        boolean range = from != null || to != null;
+        if ((range ? 1 : 0) + (expired ? 1 : 0) + (days != null ? 1 : 0) > 1) {
+            throw new BadRequestException("Only one of days, expired or from/to can be given");
+        }
+        if (days != null && days < 0) {
+            throw new BadRequestException("The days must not be negative");
+        }
+        if (!range) {
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            from = expired ? null : now;
+            to = expired ? now.minus(1, ChronoUnit.MILLIS) : now.plusDays(days == null ? 30 : days);
+        }
+
+        SoftwareLicensePageDto page = service.getLicenseWithExpiringDates(toDate(from), toDate(to), limit, cursor);
+        if (page.getNextCursor() != null) {
+            // the next page keeps the window of the first one, not one moved to the new current time
+            UriComponentsBuilder next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("days")
+                    .replaceQueryParam("expired")
+                    .replaceQueryParam("from")
+                    .replaceQueryParam("to")
+                    .replaceQueryParam("cursor", page.getNextCursor());
+            if (from != null) {
+                next.queryParam("from", from.withOffsetSameInstant(ZoneOffset.UTC).toString());
+            }
+            if (to != null) {
+                next.queryParam("to", to.withOffsetSameInstant(ZoneOffset.UTC).toString());
+            }
+            page.setNext(next.encode().toUriString());
+        }
+        return ResponseEntity.ok(page);
     }
 
 
@@ -260,14 +375,21 @@ public class SoftwareLicenseController {
                             responseCode = "401",
                             description = "Unauthorized",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The license has changed since the ETag given with If-Match",
+                            content = @Content
                     )
             }
     )
     @PutMapping("/{id}")
-    public ResponseEntity<SoftwareLicenseDto> updateSoftwareLicense(@RequestBody SoftwareLicenseDto licence, @PathVariable Long id) throws BadRequestException {
+    public ResponseEntity<SoftwareLicenseDto> updateSoftwareLicense(@RequestBody SoftwareLicenseDto licence, @PathVariable Long id,
+                                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws BadRequestException {
         log.info("updateSoftwareLicense {}", licence);
         LicenceIsNotValid(licence);
         SoftwareLicenseDto newLicence = service.getLicenseById(id);
+        ETags.checkIfMatch(ifMatch, newLicence.getVersion(), SoftwareLicenseDto.class, id);
         newLicence.setName(licence.getName());
         newLicence.setExpireDate(licence.getExpireDate());
         return ResponseEntity.ok(service.saveLicense(newLicence));
@@ -305,17 +427,26 @@ public class SoftwareLicenseController {
                     @ApiResponse(
                             responseCode = "401",
                             description = "Unauthorized",
-                            content = @Content)
+                            content = @Content),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "The license has changed since the ETag given with If-Match",
+                            content = @Content
+                    )
             }
     )
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteSoftwareLicence(@PathVariable Long id) throws EmptyResultDataAccessException, NoSuchElementException {
+    public ResponseEntity<Void> deleteSoftwareLicence(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws EmptyResultDataAccessException, NoSuchElementException {
         log.info("deleteSoftwareLicence {}", id);
-            service.deleteLicense(id);
+            service.deleteLicense(id, ETags.ifMatch(ifMatch, SoftwareLicenseDto.class, id));
             return ResponseEntity.ok().build();
     }
 
 
+    private static Date toDate(OffsetDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.toInstant());
+    }
+
     private void LicenceIsNotValid(SoftwareLicenseDto licence) throws BadRequestException {
         if(licence.getName() == null || licence.getName().equals("") || licence.getExpireDate() == null) {
             throw new BadRequestException("The Licence name and expire date must not be empty");
@@ -14,5 +14,12 @@ public class AssetDto {
     private OfficeDto office;
     private AssetTypeDto assetType;
 
+    //version of the resource, checked by the optimistic locking of the writes
+    private Long version;
+
+    //revision of the document of the asset, changes also with the office, type or licenses it embeds.
+    //The ETag is made of the version and the revision
+    private Long revision;
+
     private List<SoftwareLicenseDto> softwareLicenses;
 }
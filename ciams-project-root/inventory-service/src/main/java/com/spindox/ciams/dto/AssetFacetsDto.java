@@ -0,0 +1,14 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AssetFacetsDto {
+
+    //counts ordered by count, every one applies all the filters but the ones of its own dimension
+    private List<FacetCountDto> offices;
+    private List<FacetCountDto> assetTypes;
+    private List<FacetCountDto> softwareLicenses;
+}
@@ -0,0 +1,18 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+@Data
+public class AssetImportErrorDto {
+
+    //position of the row in the request, starting from 0
+    private int index;
+    private String serialNumber;
+    private String message;
+
+    public AssetImportErrorDto(int index, String serialNumber, String message) {
+        this.index = index;
+        this.serialNumber = serialNumber;
+        this.message = message;
+    }
+}
@@ -0,0 +1,14 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class AssetImportResultDto {
+
+    private int received;
+    private int imported;
+    private List<AssetImportErrorDto> errors = new ArrayList<>();
+}
@@ -0,0 +1,17 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AssetMoveDto {
+
+    //destination office
+    private Long officeId;
+
+    //exactly one of the following selects the assets to move
+    private List<Long> assetIds;
+    private List<String> serialNumbers;
+    private Long fromOfficeId;
+}
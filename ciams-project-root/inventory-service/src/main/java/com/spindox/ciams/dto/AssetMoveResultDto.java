@@ -0,0 +1,15 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+@Data
+public class AssetMoveResultDto {
+
+    private Long officeId;
+    private int moved;
+
+    public AssetMoveResultDto(Long officeId, int moved) {
+        this.officeId = officeId;
+        this.moved = moved;
+    }
+}
@@ -0,0 +1,18 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AssetPageDto {
+
+    //documents of the read model, in the AssetDto form
+    private List<JsonDocument> items;
+    private int limit;
+    private String sort;
+
+    //opaque token to pass back as "cursor", null on the last page
+    private String nextCursor;
+    private String next;
+}
@@ -0,0 +1,21 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AssetSearchDto {
+
+    //documents of the read model, in the AssetDto form
+    private List<JsonDocument> items;
+    private int limit;
+
+    //number of assets matching all the filters
+    private long total;
+    private AssetFacetsDto facets;
+
+    //opaque token to pass back as "cursor", null on the last page
+    private String nextCursor;
+    private String next;
+}
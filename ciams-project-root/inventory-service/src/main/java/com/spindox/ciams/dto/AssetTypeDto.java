@@ -13,5 +13,8 @@ public class AssetTypeDto {
     private String name;
     private String description;
 
+    //version of the resource, returned as its ETag
+    private Long version;
+
     //private List<AssetDto> assets;
 }
@@ -0,0 +1,17 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+@Data
+public class FacetCountDto {
+
+    private Long id;
+    private String name;
+    private long count;
+
+    public FacetCountDto(Long id, String name, long count) {
+        this.id = id;
+        this.name = name;
+        this.count = count;
+    }
+}
@@ -0,0 +1,35 @@
+package com.spindox.ciams.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * JSON already serialized, e.g. a document of the asset read model, written as is in the responses
+ */
+@Getter
+@JsonSerialize(using = JsonDocument.Serializer.class)
+public class JsonDocument {
+
+    private final String json;
+
+    public JsonDocument(String json) {
+        this.json = json;
+    }
+
+    public static class Serializer extends StdSerializer<JsonDocument> {
+
+        public Serializer() {
+            super(JsonDocument.class);
+        }
+
+        @Override
+        public void serialize(JsonDocument document, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeRawValue(document.getJson());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class LicenseAssignmentDto {
+
+    private Long licenseId;
+    private List<Long> assetIds;
+}
@@ -0,0 +1,16 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+@Data
+public class LicenseAssignmentResultDto {
+
+    private Long licenseId;
+    //number of asset_licence rows added or removed
+    private int affected;
+
+    public LicenseAssignmentResultDto(Long licenseId, int affected) {
+        this.licenseId = licenseId;
+        this.affected = affected;
+    }
+}
@@ -14,5 +14,8 @@ public class OfficeDto {
     private Long id;
     private String name;
 
+    //version of the resource, returned as its ETag
+    private Long version;
+
     //private List<AssetDto> assets;
 }
@@ -12,5 +12,8 @@ public class SoftwareLicenseDto {
     private String name;
     private Date expireDate;
 
+    //version of the resource, returned as its ETag
+    private Long version;
+
     //private List<AssetDto> assets;
 }
@@ -0,0 +1,21 @@
+package com.spindox.ciams.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+public class SoftwareLicensePageDto {
+
+    private List<SoftwareLicenseDto> items;
+    private int limit;
+
+    //expire dates of the window, inclusive, null when unbounded
+    private Date from;
+    private Date to;
+
+    //opaque token to pass back as "cursor", null on the last page
+    private String nextCursor;
+    private String next;
+}
@@ -3,33 +3,42 @@ package com.spindox.ciams.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Date;
-import java.util.List;
+import java.util.Set;
 
 @Data
 @Entity
 @Table(name = "asset", schema = "inventory")
 public class Asset {
 
+    // pooled sequence, ids are preallocated so the inserts can be sent in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "asset_id_seq")
+    @SequenceGenerator(name = "asset_id_seq", sequenceName = "asset_id_seq", schema = "inventory", allocationSize = 50)
     @Column (name = "id")
     private Long id;
     @Column (name = "serial_number")
     private String serialNumber;
     @Column (name = "acquisition_date")
     private Date acquisitionDate;
+    // optimistic locking, the ETag of the asset.
+    // The read model increases it also when the office, the type or the licenses embedded in the asset change
+    @Version
+    @Column (name = "version")
+    private Long version;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "office_id")
     private Office office;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "asset_type_id")
     private AssetType assetType;
 
-
+    // the repository queries fetch office and asset type with entity graphs, the licenses of a page are loaded in batches
+    @BatchSize(size = 500)
     @ManyToMany
     @JoinTable(
             name = "asset_licence",
@@ -37,6 +46,6 @@ public class Asset {
             joinColumns = @JoinColumn(name = "asset_id"),
             inverseJoinColumns = @JoinColumn(name = "licence_id")
     )
-    private List<SoftwareLicense> softwareLicenses;
+    private Set<SoftwareLicense> softwareLicenses;
 
 }
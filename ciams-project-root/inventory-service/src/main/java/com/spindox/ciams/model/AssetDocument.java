@@ -0,0 +1,39 @@
+package com.spindox.ciams.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.Date;
+
+/**
+ * Read model of an asset: the asset with its office, type and licenses serialized as the JSON of the AssetDto,
+ * served as is by the read endpoints. The rows are written with JDBC by the AssetDocumentService,
+ * in the transactions of the writes, the other columns select the documents
+ */
+@Data
+@Entity
+@Table(name = "asset_document", schema = "inventory")
+public class AssetDocument {
+
+    // the id of the asset
+    @Id
+    @Column(name = "id")
+    private Long id;
+    @Column(name = "serial_number")
+    private String serialNumber;
+    @Column(name = "acquisition_date")
+    private Date acquisitionDate;
+    @Column(name = "office_id")
+    private Long officeId;
+    @Column(name = "asset_type_id")
+    private Long assetTypeId;
+    // increased by every rewrite of the document
+    @Column(name = "revision", nullable = false)
+    private Long revision;
+
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    @Column(name = "document", nullable = false)
+    private String document;
+}
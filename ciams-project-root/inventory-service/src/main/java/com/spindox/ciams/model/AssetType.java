@@ -1,12 +1,18 @@
 package com.spindox.ciams.model;
 
+import com.spindox.ciams.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Data
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.ASSET_TYPE)
+@BatchSize(size = 100)
 @Table(name = "asset_type", schema = "inventory")
 public class AssetType {
 
@@ -18,6 +24,10 @@ public class AssetType {
         private String name;
         @Column (name = "description")
         private String description;
+        // optimistic locking, the ETag of the asset type
+        @Version
+        @Column (name = "version")
+        private Long version;
 
         @OneToMany(mappedBy = "assetType")
         private List<Asset> assets;
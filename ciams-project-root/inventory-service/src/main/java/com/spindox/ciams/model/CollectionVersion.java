@@ -0,0 +1,22 @@
+package com.spindox.ciams.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Version of a collection shared by the replicas, the ETag of its list endpoint.
+ * The rows are written with JDBC by the CollectionVersions, in the transactions of the writes
+ */
+@Data
+@Entity
+@Table(name = "collection_version", schema = "inventory")
+public class CollectionVersion {
+
+    // the name of the CacheInvalidation.Type of the collection
+    @Id
+    @Column(name = "collection")
+    private String collection;
+    // increased by every write of the collection
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
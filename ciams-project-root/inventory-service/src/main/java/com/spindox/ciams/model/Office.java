@@ -1,12 +1,18 @@
 package com.spindox.ciams.model;
 
+import com.spindox.ciams.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
 @Data
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.OFFICE)
+@BatchSize(size = 100)
 @Table(name = "office", schema = "inventory")
 public class Office {
 
@@ -16,6 +22,10 @@ public class Office {
     private Long id;
     @Column(name = "name")
     private String name;
+    // optimistic locking, the ETag of the office
+    @Version
+    @Column(name = "version")
+    private Long version;
 
     @OneToMany(mappedBy = "office")
     private List<Asset> assets;
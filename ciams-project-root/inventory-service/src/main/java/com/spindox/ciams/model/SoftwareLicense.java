@@ -1,16 +1,28 @@
 package com.spindox.ciams.model;
 
+import com.spindox.ciams.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Date;
 import java.util.List;
 
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.SOFTWARE_LICENSE)
+@BatchSize(size = 100)
 @Table (name = "software_license", schema = "inventory")
 public class SoftwareLicense {
 
+        // equality on the id only, so a license stays in the same bucket of the asset sets when it changes.
+        // Calling equals or hashCode on a proxy still initializes it, from the second-level cache or in batches
+        @EqualsAndHashCode.Include
         @Id
         @GeneratedValue(strategy = GenerationType.IDENTITY)
         @Column(name = "id")
@@ -19,7 +31,12 @@ public class SoftwareLicense {
         private String name;
         @Column(name = "expire_date")
         private Date expireDate;
+        // optimistic locking, the ETag of the license
+        @Version
+        @Column(name = "version")
+        private Long version;
 
+        @ToString.Exclude
         @ManyToMany(mappedBy = "softwareLicenses")
         private List<Asset> assets;
 }
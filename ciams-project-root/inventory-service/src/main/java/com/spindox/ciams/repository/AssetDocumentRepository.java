@@ -0,0 +1,62 @@
+package com.spindox.ciams.repository;
+
+import com.spindox.ciams.model.AssetDocument;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Repository
+public interface AssetDocumentRepository extends JpaRepository<AssetDocument, Long> {
+
+    @Query("select d.document from AssetDocument d where d.id = :id")
+    public Optional<String> findDocumentById(@Param("id") Long id);
+
+    @Query("select d.document from AssetDocument d where d.serialNumber = :serialNumber")
+    public Optional<String> findDocumentBySerialNumber(@Param("serialNumber") String serialNumber);
+
+    // the page of a search, in id order
+    @Query("select d.document from AssetDocument d where d.id in :ids order by d.id")
+    public List<String> findDocumentsByIds(@Param("ids") Collection<Long> ids);
+
+    // keyset pages, the same orders as the asset table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    public List<AssetDocument> findByOrderByIdAsc(Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    public List<AssetDocument> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select d from AssetDocument d where d.acquisitionDate is not null order by d.acquisitionDate asc, d.id asc")
+    public List<AssetDocument> findFirstByAcquisitionDate(Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select d from AssetDocument d where d.acquisitionDate > :date or (d.acquisitionDate = :date and d.id > :id) " +
+            "order by d.acquisitionDate asc, d.id asc")
+    public List<AssetDocument> findAfterAcquisitionDate(@Param("date") Date date, @Param("id") Long id, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    public List<AssetDocument> findByAcquisitionDateIsNullAndIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // forward-only cursor over the documents, only the JSON is read
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select d.document from AssetDocument d order by d.id")
+    public Stream<String> streamAllDocuments();
+
+    // the documents embedding an office or an asset type, rewritten when it changes
+    @Query("select d.id from AssetDocument d where d.officeId = :officeId")
+    public List<Long> findIdsByOfficeId(@Param("officeId") Long officeId);
+
+    @Query("select d.id from AssetDocument d where d.assetTypeId = :assetTypeId")
+    public List<Long> findIdsByAssetTypeId(@Param("assetTypeId") Long assetTypeId);
+}
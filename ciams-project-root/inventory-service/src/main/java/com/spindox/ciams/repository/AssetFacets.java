@@ -0,0 +1,19 @@
+package com.spindox.ciams.repository;
+
+import java.util.Date;
+
+/**
+ * Projection of an asset on the fields it can be searched and counted by
+ */
+public interface AssetFacets {
+
+    Long getId();
+
+    String getSerialNumber();
+
+    Date getAcquisitionDate();
+
+    Long getOfficeId();
+
+    Long getAssetTypeId();
+}
@@ -0,0 +1,11 @@
+package com.spindox.ciams.repository;
+
+/**
+ * Projection of a row of the asset_licence join table
+ */
+public interface AssetLicenseLink {
+
+    Long getAssetId();
+
+    Long getLicenseId();
+}
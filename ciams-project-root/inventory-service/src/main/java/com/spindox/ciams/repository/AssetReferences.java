@@ -0,0 +1,14 @@
+package com.spindox.ciams.repository;
+
+/**
+ * Projection of the existence check of the references of an asset,
+ * the number of rows found for the office, the asset type and the licenses
+ */
+public interface AssetReferences {
+
+    Long getOffices();
+
+    Long getAssetTypes();
+
+    Long getLicenses();
+}
@@ -1,15 +1,145 @@
 package com.spindox.ciams.repository;
 
 import com.spindox.ciams.model.Asset;
+import com.spindox.ciams.model.Office;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface AssetRepository extends JpaRepository<Asset, Long> {
 
+    // single lookups load the asset and its licenses in one query,
+    // the office and the asset type come from the second-level cache
+    @Override
+    @EntityGraph(attributePaths = {"softwareLicenses"})
+    public Optional<Asset> findById(Long id);
+
+    @EntityGraph(attributePaths = {"softwareLicenses"})
     public Optional<Asset> findAssetBySerialNumber(String serialNumber);
 
+    // the assets written to the read model, with everything their document embeds
+    @EntityGraph(attributePaths = {"office", "assetType", "softwareLicenses"})
+    public List<Asset> findWithReferencesByIdIn(Collection<Long> ids);
+
+    @Query("select a.version from Asset a where a.id = :id")
+    public Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select a.id from Asset a where a.id > :id order by a.id")
+    public List<Long> findIdsAfter(@Param("id") Long id, Limit limit);
+
+    @Query("select a.id from Asset a join a.softwareLicenses l where l.id = :licenseId")
+    public List<Long> findIdsByLicenseId(@Param("licenseId") Long licenseId);
+
+    // every reference of an asset checked in one round trip, an empty license list counts zero
+    @Query("select (select count(o) from Office o where o.id = :officeId) as offices, " +
+            "(select count(t) from AssetType t where t.id = :assetTypeId) as assetTypes, " +
+            "(select count(l) from SoftwareLicense l where l.id in :licenseIds) as licenses")
+    public AssetReferences countReferences(@Param("officeId") Long officeId, @Param("assetTypeId") Long assetTypeId,
+                                           @Param("licenseIds") Collection<Long> licenseIds);
+
+    @Query("select a.serialNumber from Asset a where a.serialNumber in :serialNumbers")
+    public Set<String> findExistingSerialNumbers(@Param("serialNumbers") Collection<String> serialNumbers);
+
+    // serial numbers only, they feed the serial number index
+    @Query("select a.id as id, a.serialNumber as serialNumber from Asset a where a.serialNumber is not null")
+    public List<AssetSerialNumber> findAllSerialNumbers();
+
+    @Query("select a.id as id, a.serialNumber as serialNumber from Asset a where a.id in :ids and a.serialNumber is not null")
+    public List<AssetSerialNumber> findSerialNumbersByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.id as id, a.serialNumber as serialNumber from Asset a where a.serialNumber in :serialNumbers")
+    public List<AssetSerialNumber> findSerialNumbers(@Param("serialNumbers") Collection<String> serialNumbers);
+
+    // the searchable fields and the licenses of the assets, they feed the facet index.
+    // The office and the asset type are read from the foreign keys, without joins
+    @Query("select a.id as id, a.serialNumber as serialNumber, a.acquisitionDate as acquisitionDate, " +
+            "a.office.id as officeId, a.assetType.id as assetTypeId from Asset a")
+    public List<AssetFacets> findAllFacets();
+
+    @Query("select a.id as id, a.serialNumber as serialNumber, a.acquisitionDate as acquisitionDate, " +
+            "a.office.id as officeId, a.assetType.id as assetTypeId from Asset a where a.id in :ids")
+    public List<AssetFacets> findFacetsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.id as assetId, l.id as licenseId from Asset a join a.softwareLicenses l")
+    public List<AssetLicenseLink> findAllLicenseLinks();
+
+    @Query("select a.id as assetId, l.id as licenseId from Asset a join a.softwareLicenses l where a.id in :ids")
+    public List<AssetLicenseLink> findLicenseLinksByIds(@Param("ids") Collection<Long> ids);
+
+    // full counts, only the reconciliation of the inventory counters runs them
+    @Query("select a.office.id as id, count(a) as count from Asset a group by a.office.id")
+    public List<CountById> countByOffice();
+
+    @Query("select a.assetType.id as id, count(a) as count from Asset a group by a.assetType.id")
+    public List<CountById> countByAssetType();
+
+    @Query("select l.id as id, count(a) as count from Asset a join a.softwareLicenses l group by l.id")
+    public List<CountById> countByLicense();
+
+    // the offices the assets of a move come from
+    @Query("select a.office.id as id, count(a) as count from Asset a where a.id in :ids group by a.office.id")
+    public List<CountById> countByOfficeForIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.office.id as id, count(a) as count from Asset a where a.serialNumber in :serialNumbers group by a.office.id")
+    public List<CountById> countByOfficeForSerialNumbers(@Param("serialNumbers") Collection<String> serialNumbers);
+
+    // set-based moves, one UPDATE whatever the number of assets, that also increases their versions
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Asset a set a.office = :office where a.id in :ids")
+    public int moveByIds(@Param("office") Office office, @Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Asset a set a.office = :office where a.serialNumber in :serialNumbers")
+    public int moveBySerialNumbers(@Param("office") Office office, @Param("serialNumbers") Collection<String> serialNumbers);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Asset a set a.office = :office where a.office.id = :fromOfficeId")
+    public int moveByOffice(@Param("office") Office office, @Param("fromOfficeId") Long fromOfficeId);
+
+    // license assignments write the single asset_licence rows, the inserts are idempotent
+    // and only add the rows whose asset and license exist.
+    // The native spaces keep Hibernate from clearing the whole second-level cache on every write
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "inventory.asset_licence"))
+    @Query(value = "insert into inventory.asset_licence (asset_id, licence_id) " +
+            "select a.id, l.id from inventory.asset a, inventory.software_license l " +
+            "where a.id = :assetId and l.id = :licenseId on conflict do nothing", nativeQuery = true)
+    public int installLicense(@Param("assetId") Long assetId, @Param("licenseId") Long licenseId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "inventory.asset_licence"))
+    @Query(value = "delete from inventory.asset_licence where asset_id = :assetId and licence_id = :licenseId", nativeQuery = true)
+    public int removeLicense(@Param("assetId") Long assetId, @Param("licenseId") Long licenseId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "inventory.asset_licence"))
+    @Query(value = "insert into inventory.asset_licence (asset_id, licence_id) " +
+            "select a.id, :licenseId from inventory.asset a where a.id in (:assetIds) on conflict do nothing", nativeQuery = true)
+    public int installLicenseOnAssets(@Param("licenseId") Long licenseId, @Param("assetIds") Collection<Long> assetIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "inventory.asset_licence"))
+    @Query(value = "delete from inventory.asset_licence where licence_id = :licenseId and asset_id in (:assetIds)", nativeQuery = true)
+    public int removeLicenseFromAssets(@Param("licenseId") Long licenseId, @Param("assetIds") Collection<Long> assetIds);
+
+    // the license assignments don't go through the entity, they increase the versions of the assets here
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "inventory.asset"))
+    @Query(value = "update inventory.asset set version = version + 1 where id in (:ids)", nativeQuery = true)
+    public int increaseVersions(@Param("ids") Collection<Long> ids);
+
 }
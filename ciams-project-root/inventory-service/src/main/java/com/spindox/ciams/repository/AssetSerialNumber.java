@@ -0,0 +1,11 @@
+package com.spindox.ciams.repository;
+
+/**
+ * Projection of an asset on its serial number
+ */
+public interface AssetSerialNumber {
+
+    Long getId();
+
+    String getSerialNumber();
+}
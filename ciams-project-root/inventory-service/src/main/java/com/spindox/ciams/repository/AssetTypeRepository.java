@@ -1,13 +1,25 @@
 package com.spindox.ciams.repository;
 
 import com.spindox.ciams.model.AssetType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface AssetTypeRepository extends JpaRepository<AssetType, Long> {
 
+    // cached by Hibernate, the results are dropped on every write to the table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     public List<AssetType> findAssetTypeByNameOrderByName(String name);
+
+    @Query("select t.id from AssetType t where t.id in :ids")
+    public Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,11 @@
+package com.spindox.ciams.repository;
+
+/**
+ * Projection of a GROUP BY on an id with the number of rows of each group
+ */
+public interface CountById {
+
+    Long getId();
+
+    Long getCount();
+}
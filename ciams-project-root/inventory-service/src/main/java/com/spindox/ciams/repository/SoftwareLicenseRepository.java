@@ -4,17 +4,19 @@ import com.spindox.ciams.model.AssetType;
 import com.spindox.ciams.model.Office;
 import com.spindox.ciams.model.SoftwareLicense;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface SoftwareLicenseRepository extends JpaRepository<SoftwareLicense, Long> {
 
-    public List<SoftwareLicense> findSoftwareLicenseByNameContainingOrderByName(String name);
-
-    public List<SoftwareLicense> findSoftwareLicenseByExpireDateBetween(Timestamp start, Timestamp end);
+    @Query("select l.id from SoftwareLicense l where l.id in :ids")
+    public Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,125 @@
+package com.spindox.ciams.service;
+
+import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.dto.AssetMoveDto;
+import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.repository.AssetDocumentRepository;
+import com.spindox.ciams.repository.AssetReferences;
+import com.spindox.ciams.repository.AssetRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Write commands of the single asset endpoints.
+ * Every command runs in one transaction, so one connection checkout, checks the references
+ * of the request with a single query and returns the asset as it has been written
+ */
+@Slf4j
+@Service
+public class AssetCommandService {
+
+    @Autowired
+    private AssetService assetService;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private AssetDocumentRepository assetDocumentRepository;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
+    /**
+     * Creates an asset after checking that its office, asset type and licenses exist
+     *
+     * @param assetDto the asset to create
+     * @return the created asset
+     * @throws EntityNotFoundException when a reference is not found
+     */
+    @Transactional
+    public AssetDto createAsset(AssetDto assetDto) throws EntityNotFoundException {
+        log.info("Inside the service, createAsset method");
+        checkReferences(assetDto);
+        return assetService.saveAsset(assetDto);
+    }
+
+    /**
+     * Moves an asset to another office
+     *
+     * @param assetId the pk of the asset
+     * @param officeId the pk of the destination office
+     * @return the moved asset
+     * @throws EntityNotFoundException when the asset or the office are not found
+     * @throws BadRequestException when a parameter is missing
+     */
+    @Transactional
+    public AssetDto moveAsset(Long assetId, Long officeId) throws EntityNotFoundException, BadRequestException {
+        log.info("Inside the service, moveAsset method");
+        AssetMoveDto move = new AssetMoveDto();
+        move.setOfficeId(officeId);
+        move.setAssetIds(List.of(assetId));
+        if (assetService.moveAssets(move) == 0) {
+            log.error("Asset not found with id {}", assetId);
+            throw new EntityNotFoundException("Asset with id " + assetId + " not found");
+        }
+        // the document has just been written in this transaction
+        return assetDocumentRepository.findDocumentById(assetId).map(assetDocumentService::toDto)
+                .orElseThrow(() -> new EntityNotFoundException("Asset with id " + assetId + " not found"));
+    }
+
+    /**
+     * Installs a software license on an asset
+     *
+     * @param assetId the pk of the asset
+     * @param licenseId the pk of the license
+     * @return the asset with its licenses
+     * @throws EntityNotFoundException when the asset or the license are not found
+     */
+    @Transactional
+    public AssetDto installSoftware(Long assetId, Long licenseId) throws EntityNotFoundException {
+        return assetService.installSoftware(assetId, licenseId);
+    }
+
+    /**
+     * Removes a software license from an asset
+     *
+     * @param assetId the pk of the asset
+     * @param licenseId the pk of the license
+     * @return the asset with its licenses
+     * @throws EntityNotFoundException when the asset or the license are not found
+     */
+    @Transactional
+    public AssetDto removeSoftware(Long assetId, Long licenseId) throws EntityNotFoundException {
+        return assetService.removeSoftware(assetId, licenseId);
+    }
+
+    // a concurrent delete after the check is caught by the foreign keys and answered with 409
+    private void checkReferences(AssetDto assetDto) throws EntityNotFoundException {
+        List<Long> licenseIds = assetDto.getSoftwareLicenses() == null ? new ArrayList<>()
+                : assetDto.getSoftwareLicenses().stream().filter(Objects::nonNull)
+                        .map(SoftwareLicenseDto::getId).distinct().toList();
+        AssetReferences references = assetRepository.countReferences(assetDto.getOffice().getId(),
+                assetDto.getAssetType().getId(), licenseIds);
+        if (references.getOffices() == 0) {
+            log.error("Office not found with id {}", assetDto.getOffice().getId());
+            throw new EntityNotFoundException("Office with id " + assetDto.getOffice().getId() + " not found");
+        }
+        if (references.getAssetTypes() == 0) {
+            log.error("assetType not found with id {}", assetDto.getAssetType().getId());
+            throw new EntityNotFoundException("AssetType with id " + assetDto.getAssetType().getId() + " not found");
+        }
+        if (references.getLicenses() != licenseIds.size()) {
+            log.error("softwareLicense not found among ids {}", licenseIds);
+            throw new EntityNotFoundException("softwareLicense not found among ids " + licenseIds);
+        }
+    }
+}
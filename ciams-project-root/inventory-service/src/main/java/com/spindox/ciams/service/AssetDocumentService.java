@@ -0,0 +1,211 @@
+package com.spindox.ciams.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.mapper.AssetMapper;
+import com.spindox.ciams.model.Asset;
+import com.spindox.ciams.repository.AssetDocumentRepository;
+import com.spindox.ciams.repository.AssetRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes the asset read model, the documents served by the asset read endpoints.
+ * The writes rewrite the documents of the assets they change in their own transaction,
+ * so a document is never older than the committed rows.
+ * Every rewrite increases the revision of the document, part of the ETag of the asset.
+ * The version of the asset, used by the optimistic locking, is left to the writes of the asset:
+ * a rename of an office or a change of a license rewrites the documents embedding it without
+ * locking or changing the assets. The documents are locked in the order of their ids,
+ * so two rewrites of the same documents wait for each other and never deadlock
+ */
+@Slf4j
+@Service
+public class AssetDocumentService {
+
+    private static final String INSERT = "insert into inventory.asset_document " +
+            "(id, serial_number, acquisition_date, office_id, asset_type_id, revision, document) values (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private AssetDocumentRepository assetDocumentRepository;
+
+    @Autowired
+    private AssetMapper assetMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${ciams.assets.read-model.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Rewrites the documents of some assets, the ones of the assets that don't exist anymore are deleted.
+     * The pending changes are flushed first and the persistence context is cleared,
+     * the entities of the caller are detached
+     *
+     * @param assetIds the pks of the changed assets
+     * @return the documents written by asset pk, the deleted assets are left out
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, String> refresh(Collection<Long> assetIds) {
+        List<Long> ids = assetIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Map<Long, String> documents = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            documents.putAll(write(ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+        }
+        log.debug("{} asset documents rewritten", ids.size());
+        return documents;
+    }
+
+    /**
+     * Reads a document back into the dto it was serialized from
+     *
+     * @param document the JSON of the document
+     * @return the dto of the asset
+     */
+    public AssetDto toDto(String document) {
+        try {
+            return objectMapper.readValue(document, AssetDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid asset document " + document, e);
+        }
+    }
+
+    /**
+     * Rewrites the documents embedding an office, e.g. after a rename
+     *
+     * @param officeId the pk of the office
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void refreshOffice(Long officeId) {
+        refresh(assetDocumentRepository.findIdsByOfficeId(officeId));
+    }
+
+    /**
+     * Rewrites the documents embedding an asset type, e.g. after a rename
+     *
+     * @param assetTypeId the pk of the asset type
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void refreshAssetType(Long assetTypeId) {
+        refresh(assetDocumentRepository.findIdsByAssetTypeId(assetTypeId));
+    }
+
+    /**
+     * Rewrites the documents of the assets a license is installed on, e.g. after a change of the expire date
+     *
+     * @param licenseId the pk of the license
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void refreshLicense(Long licenseId) {
+        refresh(assetRepository.findIdsByLicenseId(licenseId));
+    }
+
+    /**
+     * Writes the documents of all the assets again, in chunks committed one by one,
+     * then deletes the documents of the assets that don't exist anymore.
+     * Meant for the recovery of the read model, e.g. after writes made outside the service
+     *
+     * @return the number of documents written
+     */
+    public long rebuild() {
+        log.info("Inside the service, rebuild method");
+        long written = 0;
+        Long after = 0L;
+        List<Long> ids;
+        while (!(ids = assetRepository.findIdsAfter(after, Limit.of(chunkSize))).isEmpty()) {
+            List<Long> chunk = ids;
+            transactionTemplate.executeWithoutResult(status -> refresh(chunk));
+            written += chunk.size();
+            after = chunk.get(chunk.size() - 1);
+        }
+        Integer deleted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                "delete from inventory.asset_document d where not exists (select 1 from inventory.asset a where a.id = d.id)"));
+        log.info("Asset read model rebuilt with {} documents, {} orphan documents deleted", written, deleted);
+        return written;
+    }
+
+    private Map<Long, String> write(List<Long> ids) {
+        // a new document is a new representation of the asset, its revision changes the ETag
+        Map<Long, Long> revisions = new HashMap<>();
+        namedParameterJdbcTemplate.query("select id, revision from inventory.asset_document where id in (:ids) order by id for update",
+                Map.of("ids", ids), row -> {
+                    revisions.put(row.getLong("id"), row.getLong("revision"));
+                });
+        List<Asset> assets = assetRepository.findWithReferencesByIdIn(ids);
+        List<Object[]> rows = new ArrayList<>(assets.size());
+        Map<Long, String> documents = new HashMap<>();
+        for (Asset asset : assets) {
+            long revision = revisions.getOrDefault(asset.getId(), 0L) + 1;
+            String document = serialize(asset, revision);
+            documents.put(asset.getId(), document);
+            rows.add(new Object[]{
+                    asset.getId(),
+                    asset.getSerialNumber(),
+                    asset.getAcquisitionDate() == null ? null : new Timestamp(asset.getAcquisitionDate().getTime()),
+                    asset.getOffice() == null ? null : asset.getOffice().getId(),
+                    asset.getAssetType() == null ? null : asset.getAssetType().getId(),
+                    revision,
+                    document
+            });
+        }
+        // the serial numbers are unique, every old document goes before the new ones are written
+        namedParameterJdbcTemplate.update("delete from inventory.asset_document where id in (:ids)",
+                Map.of("ids", new LinkedHashSet<>(ids)));
+        jdbcTemplate.batchUpdate(INSERT, rows, new int[]{Types.BIGINT, Types.VARCHAR, Types.TIMESTAMP,
+                Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.VARCHAR});
+        entityManager.clear();
+        return documents;
+    }
+
+    private String serialize(Asset asset, long revision) {
+        AssetDto dto = assetMapper.toDto(asset);
+        dto.setRevision(revision);
+        try {
+            return objectMapper.writeValueAsString(dto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Asset " + asset.getId() + " can't be serialized", e);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.spindox.ciams.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CacheInvalidator;
+import com.spindox.ciams.cache.InventoryCounters;
+import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.dto.AssetImportErrorDto;
+import com.spindox.ciams.dto.AssetImportResultDto;
+import com.spindox.ciams.dto.AssetTypeDto;
+import com.spindox.ciams.dto.OfficeDto;
+import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.model.Asset;
+import com.spindox.ciams.model.AssetType;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.OfficeRepository;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class AssetImportService {
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private OfficeRepository officeRepository;
+
+    @Autowired
+    private AssetTypeRepository assetTypeRepository;
+
+    @Autowired
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${ciams.assets.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Imports the assets read from a JSON array or from newline-delimited JSON.
+     * The rows are read and committed in chunks, every chunk validates its references
+     * with set-based queries and is inserted with JDBC batches
+     *
+     * @param in the stream of the assets to import
+     * @return the number of imported assets and the rows that have been rejected
+     * @throws BadRequestException when the stream is not valid JSON
+     * @throws IOException when the stream can't be read
+     */
+    public AssetImportResultDto importAssets(InputStream in) throws IOException {
+        log.info("Inside the service, importAssets method");
+        AssetImportResultDto result = new AssetImportResultDto();
+        Set<String> requestSerials = new HashSet<>();
+        List<AssetDto> chunk = new ArrayList<>(chunkSize);
+
+        try (MappingIterator<AssetDto> rows = objectMapper.readerFor(AssetDto.class).readValues(in)) {
+            while (rows.hasNextValue()) {
+                chunk.add(rows.nextValue());
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, result, requestSerials);
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Invalid asset at row " + (result.getReceived() + chunk.size())
+                    + ", " + result.getImported() + " assets already imported: " + e.getOriginalMessage());
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, result, requestSerials);
+        }
+        log.info("Imported {} of {} assets", result.getImported(), result.getReceived());
+        return result;
+    }
+
+    private void importChunk(List<AssetDto> chunk, AssetImportResultDto result, Set<String> requestSerials) {
+        int firstIndex = result.getReceived();
+        result.setReceived(firstIndex + chunk.size());
+
+        Set<Long> offices = existing(chunk.stream().map(AssetDto::getOffice).filter(Objects::nonNull)
+                .map(OfficeDto::getId), officeRepository::findExistingIds);
+        Set<Long> assetTypes = existing(chunk.stream().map(AssetDto::getAssetType).filter(Objects::nonNull)
+                .map(AssetTypeDto::getId), assetTypeRepository::findExistingIds);
+        Set<Long> licenses = existing(chunk.stream().map(AssetDto::getSoftwareLicenses).filter(Objects::nonNull)
+                .flatMap(List::stream).filter(Objects::nonNull).map(SoftwareLicenseDto::getId), softwareLicenseRepository::findExistingIds);
+        Set<String> serials = chunk.stream().map(AssetDto::getSerialNumber).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> registeredSerials = serials.isEmpty() ? Collections.emptySet() : assetRepository.findExistingSerialNumbers(serials);
+
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            AssetDto dto = chunk.get(i);
+            String error = validate(dto, offices, assetTypes, licenses, registeredSerials, requestSerials);
+            if (error == null) {
+                valid.add(i);
+            } else {
+                result.getErrors().add(new AssetImportErrorDto(firstIndex + i, dto.getSerialNumber(), error));
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = new ArrayList<>(valid.size());
+                for (Integer i : valid) {
+                    Asset asset = toEntity(chunk.get(i));
+                    entityManager.persist(asset);
+                    ids.add(asset.getId());
+                }
+                // flushes the chunk and clears the persistence context
+                assetDocumentService.refresh(ids);
+            });
+            result.setImported(result.getImported() + valid.size());
+            InventoryCounters.Delta delta = new InventoryCounters.Delta();
+            for (Integer i : valid) {
+                AssetDto dto = chunk.get(i);
+                delta.office(dto.getOffice().getId(), 1).assetType(dto.getAssetType().getId(), 1);
+                if (dto.getSoftwareLicenses() != null) {
+                    // the same license listed twice is a single installation
+                    dto.getSoftwareLicenses().stream().map(SoftwareLicenseDto::getId).distinct()
+                            .forEach(license -> delta.license(license, 1));
+                }
+            }
+            cacheInvalidator.count(delta);
+            // the new serial numbers may have been cached as unknown
+            cacheInvalidator.invalidate(CacheInvalidation.Type.SERIAL_NUMBER,
+                    valid.stream().map(i -> chunk.get(i).getSerialNumber()).toList());
+        } catch (RuntimeException e) {
+            // a concurrent write broke a constraint, the whole chunk has been rolled back
+            log.error("Chunk starting at row {} rolled back: {}", firstIndex, e.getMessage());
+            for (Integer i : valid) {
+                AssetDto dto = chunk.get(i);
+                requestSerials.remove(dto.getSerialNumber());
+                result.getErrors().add(new AssetImportErrorDto(firstIndex + i, dto.getSerialNumber(),
+                        "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+    }
+
+    private String validate(AssetDto dto, Set<Long> offices, Set<Long> assetTypes, Set<Long> licenses,
+                            Set<String> registeredSerials, Set<String> requestSerials) {
+        if (dto.getSerialNumber() == null || dto.getSerialNumber().equals("") ||
+                dto.getAssetType() == null || dto.getAssetType().getId() == null ||
+                dto.getOffice() == null || dto.getOffice().getId() == null) {
+            return "Serial number, asset type, and office must exist";
+        }
+        if (!offices.contains(dto.getOffice().getId())) {
+            return "Office with id " + dto.getOffice().getId() + " not found";
+        }
+        if (!assetTypes.contains(dto.getAssetType().getId())) {
+            return "assetType with id " + dto.getAssetType().getId() + " not found";
+        }
+        if (dto.getSoftwareLicenses() != null) {
+            for (SoftwareLicenseDto license : dto.getSoftwareLicenses()) {
+                if (license == null || !licenses.contains(license.getId())) {
+                    return "softwareLicense with id " + (license == null ? null : license.getId()) + " not found";
+                }
+            }
+        }
+        if (registeredSerials.contains(dto.getSerialNumber()) || !requestSerials.add(dto.getSerialNumber())) {
+            return "Asset with serial number " + dto.getSerialNumber() + " already exists";
+        }
+        return null;
+    }
+
+    private Asset toEntity(AssetDto dto) {
+        Asset asset = new Asset();
+        asset.setSerialNumber(dto.getSerialNumber());
+        asset.setAcquisitionDate(dto.getAcquisitionDate());
+        // references are proxies, the rows have already been checked
+        asset.setOffice(entityManager.getReference(Office.class, dto.getOffice().getId()));
+        asset.setAssetType(entityManager.getReference(AssetType.class, dto.getAssetType().getId()));
+        Set<SoftwareLicense> licenses = new HashSet<>();
+        if (dto.getSoftwareLicenses() != null) {
+            for (SoftwareLicenseDto license : dto.getSoftwareLicenses()) {
+                licenses.add(entityManager.getReference(SoftwareLicense.class, license.getId()));
+            }
+        }
+        asset.setSoftwareLicenses(licenses);
+        return asset;
+    }
+
+    private static <T> Set<T> existing(Stream<T> ids, Function<Collection<T>, Set<T>> query) {
+        Set<T> requested = ids.filter(Objects::nonNull).collect(Collectors.toSet());
+        return requested.isEmpty() ? Collections.emptySet() : query.apply(requested);
+    }
+}
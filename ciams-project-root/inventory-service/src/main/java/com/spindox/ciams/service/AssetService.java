@@ -1,17 +1,64 @@
 package com.spindox.ciams.service;
 
+import com.spindox.ciams.cache.AssetCache;
+import com.spindox.ciams.cache.AssetFacetIndex;
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CacheInvalidator;
+import com.spindox.ciams.cache.InventoryCounters;
+import com.spindox.ciams.cache.LicenseIndex;
+import com.spindox.ciams.cache.SerialNumberIndex;
 import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.dto.AssetFacetsDto;
+import com.spindox.ciams.dto.AssetMoveDto;
+import com.spindox.ciams.dto.LicenseAssignmentDto;
+import com.spindox.ciams.dto.AssetPageDto;
+import com.spindox.ciams.dto.AssetSearchDto;
+import com.spindox.ciams.dto.FacetCountDto;
+import com.spindox.ciams.dto.JsonDocument;
+import com.spindox.ciams.dto.OfficeDto;
+import com.spindox.ciams.dto.AssetTypeDto;
+import com.spindox.ciams.dto.SoftwareLicenseDto;
 import com.spindox.ciams.mapper.AssetMapper;
 import com.spindox.ciams.model.Asset;
+import com.spindox.ciams.model.AssetDocument;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.repository.AssetDocumentRepository;
 import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.AssetSerialNumber;
+import com.spindox.ciams.repository.CountById;
+import com.spindox.ciams.repository.OfficeRepository;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -22,15 +69,286 @@ public class AssetService {
     @Autowired
     private AssetMapper assetMapper;
 
+    @Autowired
+    private AssetCache assetCache;
+
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SerialNumberIndex serialNumberIndex;
+
+    @Autowired
+    private AssetFacetIndex assetFacetIndex;
+
+    @Autowired
+    private LicenseIndex licenseIndex;
+
+    @Autowired
+    private InventoryCounters inventoryCounters;
+
+    @Autowired
+    private AssetDocumentRepository assetDocumentRepository;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
+    @Autowired
+    private OfficeService officeService;
+
+    @Autowired
+    private AssetTypeService assetTypeService;
+
+    @Autowired
+    private OfficeRepository officeRepository;
+
+    @Autowired
+    private AssetTypeRepository assetTypeRepository;
+
+    @Autowired
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    @Value("${ciams.assets.export.flush-interval:500}")
+    private int exportFlushInterval;
+
+    @Value("${ciams.assets.bulk.max-ids:10000}")
+    private int maxBulkIds;
+
+    @Value("${ciams.assets.page.default-limit:50}")
+    private int defaultPageLimit;
+
+    @Value("${ciams.assets.page.max-limit:500}")
+    private int maxPageLimit;
+
+    @Value("${ciams.assets.suggest.default-limit:10}")
+    private int defaultSuggestLimit;
+
+    @Value("${ciams.assets.suggest.max-limit:100}")
+    private int maxSuggestLimit;
+
+    /**
+     * Finds a page of assets using keyset pagination
+     *
+     * @param limit the maximum number of assets to return, capped server side
+     * @param cursor the continuation token of the previous page, null for the first page
+     * @param sort the sort key, "id" or "acquisitionDate"
+     * @return the page of assets with the cursor of the next page
+     * @throws BadRequestException when the sort or the cursor are not valid
+     */
+    @Transactional(readOnly = true)
+    public AssetPageDto getAssetsPage(Integer limit, String cursor, String sort) throws BadRequestException {
+        log.info("Inside the service, getAssetsPage method");
+        if (!KeysetCursor.SORT_ID.equals(sort) && !KeysetCursor.SORT_ACQUISITION_DATE.equals(sort)) {
+            throw new BadRequestException("Invalid sort " + sort + ", it must be id or acquisitionDate");
+        }
+        int pageSize = limit == null ? defaultPageLimit : Math.min(Math.max(limit, 1), maxPageLimit);
+
+        KeysetCursor position = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            position = KeysetCursor.decode(cursor);
+            if (!sort.equals(position.getSort())) {
+                throw new BadRequestException("The cursor was issued for sort " + position.getSort());
+            }
+        }
+
+        // one extra row tells whether there is a next page
+        Limit fetch = Limit.of(pageSize + 1);
+        List<AssetDocument> assets = KeysetCursor.SORT_ID.equals(sort)
+                ? findPageById(position, fetch)
+                : findPageByAcquisitionDate(position, fetch);
+
+        AssetPageDto page = new AssetPageDto();
+        page.setLimit(pageSize);
+        page.setSort(sort);
+        if (assets.size() > pageSize) {
+            assets = assets.subList(0, pageSize);
+            AssetDocument last = assets.get(pageSize - 1);
+            page.setNextCursor(new KeysetCursor(sort, last.getAcquisitionDate(), last.getId()).encode());
+        }
+        page.setItems(assets.stream().map(asset -> new JsonDocument(asset.getDocument())).toList());
+        log.info("Assets page of {} items, next cursor {}", assets.size(), page.getNextCursor());
+        return page;
+    }
+
+    private List<AssetDocument> findPageById(KeysetCursor position, Limit fetch) {
+        if (position == null) {
+            return assetDocumentRepository.findByOrderByIdAsc(fetch);
+        }
+        return assetDocumentRepository.findByIdGreaterThanOrderByIdAsc(position.getId(), fetch);
+    }
+
+    private List<AssetDocument> findPageByAcquisitionDate(KeysetCursor position, Limit fetch) {
+        if (position != null && position.getDate() == null) {
+            return assetDocumentRepository.findByAcquisitionDateIsNullAndIdGreaterThanOrderByIdAsc(position.getId(), fetch);
+        }
+        List<AssetDocument> assets = position == null
+                ? assetDocumentRepository.findFirstByAcquisitionDate(fetch)
+                : assetDocumentRepository.findAfterAcquisitionDate(position.getDate(), position.getId(), fetch);
+        if (assets.size() < fetch.max()) {
+            // the dated assets are over, the page continues with the ones without a date
+            List<AssetDocument> page = new ArrayList<>(assets);
+            page.addAll(assetDocumentRepository.findByAcquisitionDateIsNullAndIdGreaterThanOrderByIdAsc(0L,
+                    Limit.of(fetch.max() - assets.size())));
+            return page;
+        }
+        return assets;
+    }
+
+    /**
+     * Searches the assets by office, asset type, installed license, acquisition date and serial number prefix,
+     * and counts the matching assets by office, asset type and license.
+     * The filters and the counts are computed on the in-memory facet index, only the documents
+     * of the page are read from the read model
+     *
+     * @param officeIds the offices of the assets, any of them, empty for all
+     * @param assetTypeIds the types of the assets, any of them, empty for all
+     * @param licenseIds the licenses installed on the assets, any of them, empty for all
+     * @param acquiredFrom the first acquisition date, inclusive, null for no lower bound
+     * @param acquiredTo the last acquisition date, inclusive, null for no upper bound
+     * @param serialNumber the beginning of the serial numbers, the case is ignored, null for all
+     * @param limit the maximum number of assets to return, capped server side
+     * @param cursor the continuation token of the previous page, null for the first page
+     * @return the page of assets ordered by id, the number of matching assets and the counts
+     * @throws BadRequestException when the date range or the cursor are not valid
+     */
+    @Transactional(readOnly = true)
+    public AssetSearchDto searchAssets(Collection<Long> officeIds, Collection<Long> assetTypeIds, Collection<Long> licenseIds,
+                                       Date acquiredFrom, Date acquiredTo, String serialNumber,
+                                       Integer limit, String cursor) throws BadRequestException {
+        log.info("Inside the service, searchAssets method");
+        if (acquiredFrom != null && acquiredTo != null && acquiredFrom.after(acquiredTo)) {
+            throw new BadRequestException("The acquisition date range starts after its end");
+        }
+        int pageSize = limit == null ? defaultPageLimit : Math.min(Math.max(limit, 1), maxPageLimit);
+        KeysetCursor position = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            position = KeysetCursor.decode(cursor);
+            if (!KeysetCursor.SORT_ID.equals(position.getSort())) {
+                throw new BadRequestException("The cursor was issued for sort " + position.getSort());
+            }
+        }
+
+        AssetFacetIndex.Filter filter = new AssetFacetIndex.Filter(toSet(officeIds), toSet(assetTypeIds), toSet(licenseIds),
+                acquiredFrom, acquiredTo, serialNumber);
+        // one extra id tells whether there is a next page
+        AssetFacetIndex.Result result = assetFacetIndex.search(filter, position == null ? null : position.getId(), pageSize + 1);
+        List<Long> ids = result.ids();
+
+        AssetSearchDto search = new AssetSearchDto();
+        search.setLimit(pageSize);
+        search.setTotal(result.total());
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+            search.setNextCursor(new KeysetCursor(KeysetCursor.SORT_ID, null, ids.get(pageSize - 1)).encode());
+        }
+        search.setItems(ids.isEmpty() ? List.of()
+                : assetDocumentRepository.findDocumentsByIds(ids).stream().map(JsonDocument::new).toList());
+
+        AssetFacetsDto facets = new AssetFacetsDto();
+        facets.setOffices(facet(result.offices(),
+                names(officeService.getAllOffices(), OfficeDto::getId, OfficeDto::getName)));
+        facets.setAssetTypes(facet(result.assetTypes(),
+                names(assetTypeService.getAllAssetTypes(), AssetTypeDto::getId, AssetTypeDto::getName)));
+        facets.setSoftwareLicenses(facet(result.licenses(),
+                names(licenseIndex.findByIds(result.licenses().keySet()), SoftwareLicenseDto::getId, SoftwareLicenseDto::getName)));
+        search.setFacets(facets);
+        log.info("Assets search of {} matches, page of {} items", result.total(), search.getItems().size());
+        return search;
+    }
+
+    // the asset counts once in its office, its type and each of its licenses
+    private static InventoryCounters.Delta count(InventoryCounters.Delta delta, Asset asset, int sign) {
+        delta.office(asset.getOffice() == null ? null : asset.getOffice().getId(), sign)
+                .assetType(asset.getAssetType() == null ? null : asset.getAssetType().getId(), sign);
+        if (asset.getSoftwareLicenses() != null) {
+            asset.getSoftwareLicenses().forEach(license -> delta.license(license.getId(), sign));
+        }
+        return delta;
+    }
+
+    private static void moveCounts(InventoryCounters.Delta delta, List<CountById> sources, Long officeId) {
+        for (CountById source : sources) {
+            delta.office(source.getId(), -source.getCount()).office(officeId, source.getCount());
+        }
+    }
+
+    private static Set<Long> toSet(Collection<Long> ids) {
+        return ids == null ? Set.of() : new HashSet<>(ids);
+    }
+
+    /**
+     * Counts the assets of every office, read from the inventory counters
+     *
+     * @return the number of assets by office, the most populated first
+     */
+    public List<FacetCountDto> countAssetsByOffice() {
+        log.info("Inside the service, countAssetsByOffice method");
+        return facet(inventoryCounters.get(InventoryCounters.Dimension.OFFICE),
+                names(officeService.getAllOffices(), OfficeDto::getId, OfficeDto::getName));
+    }
+
     /**
-     * Finds all the assets
+     * Counts the assets of every asset type, read from the inventory counters
      *
-     * @return a list of all the assets
+     * @return the number of assets by asset type, the most populated first
      */
-    public List<AssetDto> getAllAssets() {
-        log.info("Inside the service, getAllAssets method");
-        List<Asset> assets = assetRepository.findAll();
-        return assetMapper.toDto(assets);
+    public List<FacetCountDto> countAssetsByAssetType() {
+        log.info("Inside the service, countAssetsByAssetType method");
+        return facet(inventoryCounters.get(InventoryCounters.Dimension.ASSET_TYPE),
+                names(assetTypeService.getAllAssetTypes(), AssetTypeDto::getId, AssetTypeDto::getName));
+    }
+
+    /**
+     * Counts the installations of every software license, read from the inventory counters
+     *
+     * @return the number of assets by installed license, the most installed first
+     */
+    public List<FacetCountDto> countInstallationsByLicense() {
+        log.info("Inside the service, countInstallationsByLicense method");
+        Map<Long, Long> counts = inventoryCounters.get(InventoryCounters.Dimension.LICENSE);
+        return facet(counts, names(licenseIndex.findByIds(counts.keySet()), SoftwareLicenseDto::getId, SoftwareLicenseDto::getName));
+    }
+
+    private static <T> Map<Long, String> names(List<T> items, Function<T, Long> id, Function<T, String> name) {
+        Map<Long, String> names = new HashMap<>();
+        items.forEach(item -> names.put(id.apply(item), name.apply(item)));
+        return names;
+    }
+
+    // the most frequent values first
+    private static List<FacetCountDto> facet(Map<Long, ? extends Number> counts, Map<Long, String> names) {
+        return counts.entrySet().stream()
+                .map(count -> new FacetCountDto(count.getKey(), names.get(count.getKey()), count.getValue().longValue()))
+                .sorted(Comparator.comparingLong(FacetCountDto::getCount).reversed().thenComparing(FacetCountDto::getId))
+                .toList();
+    }
+
+    /**
+     * Writes all the assets as newline-delimited JSON, one asset per line.
+     * The documents of the read model are read through a forward-only cursor and copied as they are,
+     * so the memory used doesn't depend on the table size
+     *
+     * @param out the stream where the assets are written
+     * @throws IOException when the stream can't be written
+     */
+    @Transactional(readOnly = true)
+    public void exportAssets(OutputStream out) throws IOException {
+        log.info("Inside the service, exportAssets method");
+        long count = 0;
+        try (Stream<String> documents = assetDocumentRepository.streamAllDocuments()) {
+            Iterator<String> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                out.write(iterator.next().getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+                if (++count % exportFlushInterval == 0) {
+                    out.flush();
+                }
+            }
+        }
+        log.info("Exported {} assets", count);
     }
 
     /**
@@ -43,11 +361,11 @@ public class AssetService {
     public AssetDto getAssetById(Long id) throws EntityNotFoundException {
 
         log.info("Inside the service, getAssetById method");
-        Optional<Asset> assetOpt =  assetRepository.findById(id);
-        if(assetOpt.isPresent()){
-            Asset asset = assetOpt.get();
+        AssetDto assetDto = assetCache.getById(id,
+                key -> readOnly(() -> assetDocumentRepository.findDocumentById(key).map(assetDocumentService::toDto).orElse(null)));
+        if(assetDto != null){
             log.info("Asset found with id {}", id);
-            return assetMapper.toDto(asset);
+            return assetDto;
         }
         else{
             log.info("Asset not found with id {}", id);
@@ -62,24 +380,64 @@ public class AssetService {
      * @param assetDto is the asset to save
      * @return the saved asset
      */
+    @Transactional
     public AssetDto saveAsset(AssetDto assetDto) {
         Asset asset = assetMapper.fromDto(assetDto);
+        // the dtos of the references carry only the ids, the asset points to proxies of the rows
+        if (asset.getOffice() != null && asset.getOffice().getId() != null) {
+            asset.setOffice(officeRepository.getReferenceById(asset.getOffice().getId()));
+        }
+        if (asset.getAssetType() != null && asset.getAssetType().getId() != null) {
+            asset.setAssetType(assetTypeRepository.getReferenceById(asset.getAssetType().getId()));
+        }
+        if (asset.getSoftwareLicenses() != null) {
+            // adding the proxies to the set hashes them, which initializes them:
+            // from the second-level cache, the cold ones in batches
+            asset.setSoftwareLicenses(asset.getSoftwareLicenses().stream()
+                    .map(license -> softwareLicenseRepository.getReferenceById(license.getId()))
+                    .collect(Collectors.toSet()));
+        }
+        InventoryCounters.Delta delta = new InventoryCounters.Delta();
+        if (asset.getId() != null && asset.getVersion() == null) {
+            // an update without the version read by the client overwrites the current one
+            asset.setVersion(assetRepository.findVersionById(asset.getId()).orElse(null));
+        }
+        if (asset.getId() != null) {
+            // an update takes the asset out of the counts of its previous office, type and licenses
+            assetRepository.findFacetsByIds(List.of(asset.getId())).forEach(previous ->
+                    delta.office(previous.getOfficeId(), -1).assetType(previous.getAssetTypeId(), -1));
+            assetRepository.findLicenseLinksByIds(List.of(asset.getId())).forEach(link -> delta.license(link.getLicenseId(), -1));
+        }
         assetRepository.save(asset);
+        Map<Long, String> documents = assetDocumentService.refresh(List.of(asset.getId()));
+        cacheInvalidator.count(count(delta, asset, 1));
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, asset.getId());
+        // the serial number may have been cached as unknown
+        cacheInvalidator.invalidate(CacheInvalidation.Type.SERIAL_NUMBER, asset.getSerialNumber());
         log.info("Asset saved with id {}", asset.getId());
-        return assetMapper.toDto(asset);
+        // the document embeds the office, the type and the licenses as they are in the tables
+        return assetDocumentService.toDto(documents.get(asset.getId()));
     }
 
     /**
      * Deletes an asset on the database
      *
      * @param id the pk of the asset to cancel
+     * @param version the version read by the client, null to delete the current one
      */
-    public void deleteAsset(Long id) {
+    @Transactional
+    public void deleteAsset(Long id, Long version) {
         Optional<Asset> assetOpt =  assetRepository.findById(id);
         if(assetOpt.isPresent()){
             Asset asset = assetOpt.get();
+            if (version != null && !version.equals(asset.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Asset.class, id);
+            }
             log.info("Asset deleted with id {}", asset.getId());
             assetRepository.delete(asset);
+            assetDocumentService.refresh(List.of(id));
+            cacheInvalidator.count(count(new InventoryCounters.Delta(), asset, -1));
+            cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, id);
         }
         else{
             log.error("Asset not found with id {}", id);
@@ -88,7 +446,188 @@ public class AssetService {
     }
 
     /**
-     * Finds an asset by his serial number
+     * Moves many assets to an office with a single update.
+     * The assets are selected by id, by serial number or by their current office
+     *
+     * @param move the destination office and the assets to move
+     * @return the number of moved assets
+     * @throws BadRequestException when the assets to move are not specified exactly once
+     * @throws EntityNotFoundException when the destination office is not found
+     */
+    @Transactional
+    public int moveAssets(AssetMoveDto move) throws BadRequestException, EntityNotFoundException {
+        log.info("Inside the service, moveAssets method");
+        int selectors = (move.getAssetIds() != null ? 1 : 0) + (move.getSerialNumbers() != null ? 1 : 0)
+                + (move.getFromOfficeId() != null ? 1 : 0);
+        if (move.getOfficeId() == null || selectors != 1) {
+            throw new BadRequestException("Invalid request parameters: the office and one of assetIds, serialNumbers or fromOfficeId must exist");
+        }
+        int requested = move.getAssetIds() != null ? move.getAssetIds().size()
+                : move.getSerialNumbers() != null ? move.getSerialNumbers().size() : 0;
+        if (requested > maxBulkIds) {
+            throw new BadRequestException("At most " + maxBulkIds + " assets can be moved by id or serial number");
+        }
+        if (!officeRepository.existsById(move.getOfficeId())) {
+            log.error("Office not found with id {}", move.getOfficeId());
+            throw new EntityNotFoundException("Office with id " + move.getOfficeId() + " not found");
+        }
+
+        Office office = officeRepository.getReferenceById(move.getOfficeId());
+        InventoryCounters.Delta delta = new InventoryCounters.Delta();
+        int moved;
+        if (move.getAssetIds() != null) {
+            if (!move.getAssetIds().isEmpty()) {
+                // the counts of the offices the assets leave, read before the update
+                moveCounts(delta, assetRepository.countByOfficeForIds(move.getAssetIds()), move.getOfficeId());
+            }
+            moved = move.getAssetIds().isEmpty() ? 0 : assetRepository.moveByIds(office, move.getAssetIds());
+            assetDocumentService.refresh(move.getAssetIds());
+            cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, move.getAssetIds());
+        } else if (move.getSerialNumbers() != null) {
+            if (!move.getSerialNumbers().isEmpty()) {
+                moveCounts(delta, assetRepository.countByOfficeForSerialNumbers(move.getSerialNumbers()), move.getOfficeId());
+            }
+            moved = move.getSerialNumbers().isEmpty() ? 0 : assetRepository.moveBySerialNumbers(office, move.getSerialNumbers());
+            if (moved > 0) {
+                assetDocumentService.refresh(assetRepository.findSerialNumbers(move.getSerialNumbers()).stream()
+                        .map(AssetSerialNumber::getId).toList());
+            }
+            cacheInvalidator.invalidate(CacheInvalidation.Type.SERIAL_NUMBER, move.getSerialNumbers());
+        } else {
+            moved = assetRepository.moveByOffice(office, move.getFromOfficeId());
+            // the documents still tell the office the assets come from
+            assetDocumentService.refreshOffice(move.getFromOfficeId());
+            delta.office(move.getFromOfficeId(), -moved).office(move.getOfficeId(), moved);
+            // the cached assets of the office are evicted along with the office entries
+            cacheInvalidator.invalidate(CacheInvalidation.Type.OFFICE, move.getFromOfficeId());
+        }
+        cacheInvalidator.count(delta);
+        log.info("{} assets moved to office {}", moved, move.getOfficeId());
+        return moved;
+    }
+
+    /**
+     * Installs a software license on an asset, writing only its asset_licence row.
+     * Installing a license that is already installed changes nothing
+     *
+     * @param assetId the pk of the asset
+     * @param licenseId the pk of the license
+     * @return the asset as written
+     * @throws EntityNotFoundException when the asset or the license are not found
+     */
+    @Transactional
+    public AssetDto installSoftware(Long assetId, Long licenseId) throws EntityNotFoundException {
+        int installed = assetRepository.installLicense(assetId, licenseId);
+        if (installed == 0) {
+            checkAssetAndLicense(assetId, licenseId);
+        } else {
+            assetRepository.increaseVersions(List.of(assetId));
+        }
+        Map<Long, String> documents = assetDocumentService.refresh(List.of(assetId));
+        cacheInvalidator.count(new InventoryCounters.Delta().license(licenseId, installed));
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, assetId);
+        log.info("License {} installed on asset {}", licenseId, assetId);
+        return assetDocumentService.toDto(documents.get(assetId));
+    }
+
+    /**
+     * Removes a software license from an asset, deleting only its asset_licence row.
+     * Removing a license that is not installed changes nothing
+     *
+     * @param assetId the pk of the asset
+     * @param licenseId the pk of the license
+     * @return the asset as written
+     * @throws EntityNotFoundException when the asset or the license are not found
+     */
+    @Transactional
+    public AssetDto removeSoftware(Long assetId, Long licenseId) throws EntityNotFoundException {
+        int removed = assetRepository.removeLicense(assetId, licenseId);
+        if (removed == 0) {
+            checkAssetAndLicense(assetId, licenseId);
+        } else {
+            assetRepository.increaseVersions(List.of(assetId));
+        }
+        Map<Long, String> documents = assetDocumentService.refresh(List.of(assetId));
+        cacheInvalidator.count(new InventoryCounters.Delta().license(licenseId, -removed));
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, assetId);
+        log.info("License {} removed from asset {}", licenseId, assetId);
+        return assetDocumentService.toDto(documents.get(assetId));
+    }
+
+    /**
+     * Installs a software license on many assets with a single insert.
+     * The assets that already have the license and the ids that don't exist are skipped
+     *
+     * @param assignment the license and the assets
+     * @return the number of installations added
+     * @throws BadRequestException when the license or the assets are missing
+     * @throws EntityNotFoundException when the license is not found
+     */
+    @Transactional
+    public int installSoftwareOnAssets(LicenseAssignmentDto assignment) throws BadRequestException, EntityNotFoundException {
+        checkAssignment(assignment);
+        int installed = assignment.getAssetIds().isEmpty() ? 0
+                : assetRepository.installLicenseOnAssets(assignment.getLicenseId(), assignment.getAssetIds());
+        if (installed > 0) {
+            assetRepository.increaseVersions(assignment.getAssetIds());
+        }
+        assetDocumentService.refresh(assignment.getAssetIds());
+        cacheInvalidator.count(new InventoryCounters.Delta().license(assignment.getLicenseId(), installed));
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, assignment.getAssetIds());
+        log.info("License {} installed on {} assets", assignment.getLicenseId(), installed);
+        return installed;
+    }
+
+    /**
+     * Removes a software license from many assets with a single delete
+     *
+     * @param assignment the license and the assets
+     * @return the number of installations removed
+     * @throws BadRequestException when the license or the assets are missing
+     * @throws EntityNotFoundException when the license is not found
+     */
+    @Transactional
+    public int removeSoftwareFromAssets(LicenseAssignmentDto assignment) throws BadRequestException, EntityNotFoundException {
+        checkAssignment(assignment);
+        int removed = assignment.getAssetIds().isEmpty() ? 0
+                : assetRepository.removeLicenseFromAssets(assignment.getLicenseId(), assignment.getAssetIds());
+        if (removed > 0) {
+            assetRepository.increaseVersions(assignment.getAssetIds());
+        }
+        assetDocumentService.refresh(assignment.getAssetIds());
+        cacheInvalidator.count(new InventoryCounters.Delta().license(assignment.getLicenseId(), -removed));
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET, assignment.getAssetIds());
+        log.info("License {} removed from {} assets", assignment.getLicenseId(), removed);
+        return removed;
+    }
+
+    private void checkAssignment(LicenseAssignmentDto assignment) throws BadRequestException, EntityNotFoundException {
+        if (assignment.getLicenseId() == null || assignment.getAssetIds() == null) {
+            throw new BadRequestException("Invalid request parameters: licenseId and assetIds must exist");
+        }
+        if (assignment.getAssetIds().size() > maxBulkIds) {
+            throw new BadRequestException("At most " + maxBulkIds + " assets can be changed at once");
+        }
+        if (!softwareLicenseRepository.existsById(assignment.getLicenseId())) {
+            log.error("softwareLicense not found with id {}", assignment.getLicenseId());
+            throw new EntityNotFoundException("softwareLicense with id " + assignment.getLicenseId() + " not found");
+        }
+    }
+
+    private void checkAssetAndLicense(Long assetId, Long licenseId) throws EntityNotFoundException {
+        if (!assetRepository.existsById(assetId)) {
+            log.error("Asset not found with id {}", assetId);
+            throw new EntityNotFoundException("Asset with id " + assetId + " not found");
+        }
+        if (!softwareLicenseRepository.existsById(licenseId)) {
+            log.error("softwareLicense not found with id {}", licenseId);
+            throw new EntityNotFoundException("softwareLicense with id " + licenseId + " not found");
+        }
+    }
+
+    /**
+     * Finds an asset by his serial number.
+     * Unknown serial numbers are cached too, so repeated scans don't reach the database
      *
      * @param serialNumber of the asset
      * @return the found asset
@@ -97,15 +636,41 @@ public class AssetService {
     public AssetDto getAssetBySerialNumber(String serialNumber) throws EntityNotFoundException{
 
         log.info("Inside the service, getAssetBySerialNumber method");
-        Optional<Asset> assetOpt =  assetRepository.findAssetBySerialNumber(serialNumber);
+        Optional<AssetDto> assetOpt = assetCache.getBySerialNumber(serialNumber,
+                key -> readOnly(() -> assetDocumentRepository.findDocumentBySerialNumber(key).map(assetDocumentService::toDto)));
         if(assetOpt.isPresent()){
-            Asset asset = assetOpt.get();
+            AssetDto asset = assetOpt.get();
             log.info("Asset found with id {}", asset.getId());
-            return assetMapper.toDto(asset);
+            return asset;
         }
         else{
             log.info("Asset not found with id {}", serialNumber);
             throw  new EntityNotFoundException("Office with name " + serialNumber + " not found");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Suggests the serial numbers starting with a prefix, ignoring the case.
+     * The serial numbers are read from the in-memory serial number index
+     *
+     * @param prefix the beginning of the serial numbers
+     * @param limit the maximum number of serial numbers to return, capped server side
+     * @return the serial numbers in alphabetical order
+     * @throws BadRequestException when the prefix is empty
+     */
+    public List<String> suggestSerialNumbers(String prefix, Integer limit) throws BadRequestException {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new BadRequestException("The prefix must not be empty");
+        }
+        int size = limit == null ? defaultSuggestLimit : Math.min(Math.max(limit, 1), maxSuggestLimit);
+        return serialNumberIndex.suggest(prefix, size);
+    }
+
+    // the cache misses load the asset in a transaction of their own, the office and
+    // the asset type are lazy and the hits must not open one
+    private <T> T readOnly(Supplier<T> query) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> query.get());
+    }
+}
@@ -1,5 +1,8 @@
 package com.spindox.ciams.service;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CacheInvalidator;
+import com.spindox.ciams.config.CacheConfig;
 import com.spindox.ciams.dto.AssetTypeDto;
 import com.spindox.ciams.mapper.AssetTypeMapper;
 import com.spindox.ciams.model.AssetType;
@@ -7,9 +10,10 @@ import com.spindox.ciams.repository.AssetTypeRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,12 +28,18 @@ public class AssetTypeService {
     @Autowired
     private AssetTypeMapper assetTypeMapper;
 
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
     /**
      * Finds all the AssetTypes
      *
      * @return a list of all the asset types
      */
-    @Cacheable(value = "AssetTypes" )
+    @Cacheable(value = CacheConfig.ASSET_TYPE_LIST, key = "T(com.spindox.ciams.config.CacheConfig).LIST_KEY", sync = true)
     public List<AssetTypeDto> getAllAssetTypes(){
 
         log.info("Inside the service, getAllAssetTypes method");
@@ -44,7 +54,7 @@ public class AssetTypeService {
      * @return the found asset type
      * @throws EntityNotFoundException when the asset type is not found
      */
-    @Cacheable(value = "AssetTypes", key = "#id")
+    @Cacheable(value = CacheConfig.ASSET_TYPE_BY_ID, key = "#id", sync = true)
     public AssetTypeDto getAssetTypeById(Long id) throws EntityNotFoundException {
 
         log.info("Inside the service, getAssetTypeById method");
@@ -61,15 +71,19 @@ public class AssetTypeService {
     }
 
     /**
-     * Saves an asset type on the database
+     * Saves an asset type on the database.
+     * The cached entries built on the asset type are invalidated on every replica
+     * and the documents of its assets are written again
      *
      * @param assetTypeDto is the asset type to save
      * @return the asset type saved
      */
-    @CacheEvict(value = "AssetTypes")
+    @Transactional
     public AssetTypeDto saveAssetType(AssetTypeDto assetTypeDto){
         AssetType assetType = assetTypeMapper.fromDto(assetTypeDto);
         assetTypeRepository.save(assetType);
+        assetDocumentService.refreshAssetType(assetType.getId());
+        cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET_TYPE, assetType.getId());
         log.info("assetType saved with id {}", assetType.getId());
         return assetTypeMapper.toDto(assetType);
     }
@@ -78,17 +92,22 @@ public class AssetTypeService {
      * Deletes an asset type
      *
      * @param id the pk of the asset type to cancel
+     * @param version the version read by the client, null to delete the current one
      * @throws EntityNotFoundException when the asset type is not found
      */
-    @CacheEvict(value = "AssetTypes")
-    public void deleteAssetType(Long id) throws EntityNotFoundException {
+    @Transactional
+    public void deleteAssetType(Long id, Long version) throws EntityNotFoundException {
 
 
         Optional<AssetType> assetOpt =  assetTypeRepository.findById(id);
         if(assetOpt.isPresent()){
             AssetType assetType = assetOpt.get();
+            if (version != null && !version.equals(assetType.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(AssetType.class, id);
+            }
             log.info("assetType deleted with id {}", id);
             assetTypeRepository.delete(assetType);
+            cacheInvalidator.invalidate(CacheInvalidation.Type.ASSET_TYPE, id);
         }
         else{
             log.error("assetType not found with id {}", id);
@@ -103,7 +122,7 @@ public class AssetTypeService {
      * @return the asset type found
      * @throws EntityNotFoundException when the asset type is not found
      */
-    @Cacheable(value = "AssetTypes", key = "#name")
+    @Cacheable(value = CacheConfig.ASSET_TYPE_BY_NAME, key = "#name", sync = true)
     public List<AssetTypeDto> getAssetTypeByName(String name) throws EntityNotFoundException {
 
         List<AssetType> assetTypeList =  assetTypeRepository.findAssetTypeByNameOrderByName(name);
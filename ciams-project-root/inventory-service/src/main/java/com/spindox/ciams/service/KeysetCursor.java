@@ -0,0 +1,59 @@
+package com.spindox.ciams.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.coyote.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last row returned by a keyset page ordered by a date and the id.
+ * The token handed to clients is the base64url form of "sort:date:id",
+ * the date being epoch millis or empty when the row has none.
+ */
+@Getter
+@AllArgsConstructor
+class KeysetCursor {
+
+    static final String SORT_ID = "id";
+    static final String SORT_ACQUISITION_DATE = "acquisitionDate";
+    static final String SORT_EXPIRE_DATE = "expireDate";
+
+    private final String sort;
+    private final Date date;
+    private final Long id;
+
+    /**
+     * Encodes the cursor in the opaque form returned to the clients
+     *
+     * @return the continuation token
+     */
+    String encode() {
+        String millis = date == null ? "" : String.valueOf(date.getTime());
+        String raw = sort + ":" + millis + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token
+     *
+     * @param token the token received from the client
+     * @return the decoded cursor
+     * @throws BadRequestException when the token is malformed
+     */
+    static KeysetCursor decode(String token) throws BadRequestException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length != 3) {
+                throw new BadRequestException("Invalid cursor " + token);
+            }
+            Date date = parts[1].isEmpty() ? null : new Date(Long.parseLong(parts[1]));
+            return new KeysetCursor(parts[0], date, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor " + token);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.spindox.ciams.service;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CacheInvalidator;
+import com.spindox.ciams.config.CacheConfig;
 import com.spindox.ciams.dto.OfficeDto;
 import com.spindox.ciams.mapper.OfficeMapper;
 import com.spindox.ciams.model.Office;
@@ -7,9 +10,10 @@ import com.spindox.ciams.repository.OfficeRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,13 +28,19 @@ public class OfficeService {
     @Autowired
     private OfficeMapper officeMapper;
 
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
     /**
      * Find all Officies
      *
      * @return List of officies
      */
 
-    @Cacheable(value = "Offices" )
+    @Cacheable(value = CacheConfig.OFFICE_LIST, key = "T(com.spindox.ciams.config.CacheConfig).LIST_KEY", sync = true)
     public List<OfficeDto> getAllOffices(){
         log.info("Inside the service, getAllOffices method");
         List<Office> offices = officeRepository.findAll();
@@ -44,7 +54,7 @@ public class OfficeService {
      * @return the foud office
      * @throws EntityNotFoundException when office is not found
      */
-    @Cacheable(value = "Offices", key = "#id")
+    @Cacheable(value = CacheConfig.OFFICE_BY_ID, key = "#id", sync = true)
     public OfficeDto getOfficeById(Long id) throws EntityNotFoundException{
 
         log.info("Inside the service, getOfficeById method");
@@ -62,15 +72,19 @@ public class OfficeService {
     }
 
     /**
-     * Saves an office on the batabase
+     * Saves an office on the batabase.
+     * The cached entries built on the office are invalidated on every replica
+     * and the documents of its assets are written again
      *
      * @param officeDto is the dto that get mapped in the entity saved
      * @return that dto of the office
      */
-    @CacheEvict(value = "Offices")
+    @Transactional
     public OfficeDto saveOffice(OfficeDto officeDto){
         Office office = officeMapper.fromDto(officeDto);
         officeRepository.save(office);
+        assetDocumentService.refreshOffice(office.getId());
+        cacheInvalidator.invalidate(CacheInvalidation.Type.OFFICE, office.getId());
         log.info("office saved with id {}", office.getId());
         return officeMapper.toDto(office);
     }
@@ -79,14 +93,19 @@ public class OfficeService {
      * Deletes an office from the database
      *
      * @param id is the pk of the office
+     * @param version the version read by the client, null to delete the current one
      */
-    @CacheEvict(value = "Offices")
-    public void deleteOffice(Long id){
+    @Transactional
+    public void deleteOffice(Long id, Long version){
         Optional<Office> officeOpt =  officeRepository.findById(id);
         if(officeOpt.isPresent()){
             Office office = officeOpt.get();
+            if (version != null && !version.equals(office.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Office.class, id);
+            }
             log.info("office deleted with id {}", office.getId());
             officeRepository.delete(office);
+            cacheInvalidator.invalidate(CacheInvalidation.Type.OFFICE, id);
         }
         else{
             log.error("Office not found with id {}", id);
@@ -102,7 +121,7 @@ public class OfficeService {
      * @return the dto of the office
      * @throws EntityNotFoundException when the office doesn't get found
      */
-    @Cacheable(value = "Offices", key = "#name")
+    @Cacheable(value = CacheConfig.OFFICE_BY_NAME, key = "#name", sync = true)
     public OfficeDto getOfficeByName(String name) throws EntityNotFoundException{
 
         log.info("Inside the service, getOfficeByName method");
@@ -1,17 +1,25 @@
 package com.spindox.ciams.service;
 
+import com.spindox.ciams.cache.CacheInvalidation;
+import com.spindox.ciams.cache.CacheInvalidator;
+import com.spindox.ciams.cache.InventoryCounters;
+import com.spindox.ciams.cache.LicenseIndex;
 import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.dto.SoftwareLicensePageDto;
 import com.spindox.ciams.mapper.SoftwareLicenseMapper;
 import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.AssetRepository;
 import com.spindox.ciams.repository.SoftwareLicenseRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +34,33 @@ public class SoftwareLicenceService {
     @Autowired
     private SoftwareLicenseMapper softwareLicenseMapper;
 
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+
+    @Autowired
+    private LicenseIndex licenseIndex;
+
+    @Autowired
+    private InventoryCounters inventoryCounters;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
+    @Value("${ciams.licenses.page.default-limit:50}")
+    private int defaultPageLimit;
+
+    @Value("${ciams.licenses.page.max-limit:500}")
+    private int maxPageLimit;
+
+    @Value("${ciams.licenses.search.default-limit:20}")
+    private int defaultSearchLimit;
+
+    @Value("${ciams.licenses.search.max-limit:100}")
+    private int maxSearchLimit;
+
     /**
      * Find all Software Licenses
      *
@@ -57,14 +92,18 @@ public class SoftwareLicenceService {
     }
 
     /**
-     * Saves a software license on the database
+     * Saves a software license on the database,
+     * the documents of the assets it is installed on are written again
      *
      * @param softwareLicenseDto is the dto that gets mapped into the entity saved
      * @return the dto of the saved license
      */
+    @Transactional
     public SoftwareLicenseDto saveLicense(SoftwareLicenseDto softwareLicenseDto) {
         SoftwareLicense softwareLicense = softwareLicenseMapper.fromDto(softwareLicenseDto);
         softwareLicenseRepository.save(softwareLicense);
+        assetDocumentService.refreshLicense(softwareLicense.getId());
+        cacheInvalidator.invalidate(CacheInvalidation.Type.SOFTWARE_LICENSE, softwareLicense.getId());
         log.info("softwareLicense saved with id {}", softwareLicense.getId());
         return softwareLicenseMapper.toDto(softwareLicense);
     }
@@ -73,14 +112,25 @@ public class SoftwareLicenceService {
      * Deletes a software license from the database
      *
      * @param id is the pk of the license
+     * @param version the version read by the client, null to delete the current one
      */
-    public void deleteLicense(Long id) {
+    @Transactional
+    public void deleteLicense(Long id, Long version) {
 
         Optional<SoftwareLicense> licenseOpt =  softwareLicenseRepository.findById(id);
         if(licenseOpt.isPresent()){
             SoftwareLicense license = licenseOpt.get();
+            if (version != null && !version.equals(license.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(SoftwareLicense.class, id);
+            }
             log.info("softwareLicense deleted with id {}", id);
+            List<Long> assetIds = assetRepository.findIdsByLicenseId(id);
             softwareLicenseRepository.delete(license);
+            assetDocumentService.refresh(assetIds);
+            // the installations are deleted along with the license
+            cacheInvalidator.count(new InventoryCounters.Delta()
+                    .license(id, -inventoryCounters.get(InventoryCounters.Dimension.LICENSE, id)));
+            cacheInvalidator.invalidate(CacheInvalidation.Type.SOFTWARE_LICENSE, id);
         }
         else{
             log.error("Office not found with id {}", id);
@@ -89,34 +139,61 @@ public class SoftwareLicenceService {
     }
 
     /**
-     * Finds a software license by its name
+     * Finds the software licenses whose name contains a text, ignoring the case.
+     * The licenses are read from the in-memory trigram index, the best matches come first
      *
-     * @param name is the name of the license
-     * @return the dto of the license
-     * @throws EntityNotFoundException when the license doesn't get found
+     * @param name is the text to search in the names of the licenses
+     * @param limit the maximum number of licenses to return, capped server side
+     * @return the dtos of the licenses
      */
-    public List<SoftwareLicenseDto> getLicenseByName(String name) throws EntityNotFoundException {
+    public List<SoftwareLicenseDto> getLicenseByName(String name, Integer limit) {
         log.info("Inside the service, getLicenseByName method");
-        List<SoftwareLicense> Listlicense = softwareLicenseRepository.findSoftwareLicenseByNameContainingOrderByName(name);
-        return softwareLicenseMapper.toDto(Listlicense);
+        int size = limit == null ? defaultSearchLimit : Math.min(Math.max(limit, 1), maxSearchLimit);
+        return licenseIndex.searchByName(name, size);
     }
 
     /**
-     * Finds all the software licenses that are expiring in the next 30 days
+     * Finds a page of the software licenses expiring in a window, ordered by expire date.
+     * The licenses are read from the in-memory license index
      *
-     * @return the list of the software licenses expiring
+     * @param from the first expire date, inclusive, null for no lower bound
+     * @param to the last expire date, inclusive, null for no upper bound
+     * @param limit the maximum number of licenses to return, capped server side
+     * @param cursor the continuation token of the previous page, null for the first page
+     * @return the page of licenses with the cursor of the next page
+     * @throws BadRequestException when the window or the cursor are not valid
      */
-    public List<SoftwareLicenseDto> getLicenseWithExpiringDates() {
+    public SoftwareLicensePageDto getLicenseWithExpiringDates(Date from, Date to, Integer limit, String cursor) throws BadRequestException {
 
         log.info("Inside the service, getLicenseWithExpiringDates method");
-        Instant today = Instant.now();
-        Instant in30   = today.plus(30, ChronoUnit.DAYS);
-        Timestamp start = Timestamp.from(today);
-        Timestamp end   = Timestamp.from(in30);
+        if (from != null && to != null && from.after(to)) {
+            throw new BadRequestException("The window must start before it ends");
+        }
+        int pageSize = limit == null ? defaultPageLimit : Math.min(Math.max(limit, 1), maxPageLimit);
+
+        KeysetCursor position = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            position = KeysetCursor.decode(cursor);
+            if (!KeysetCursor.SORT_EXPIRE_DATE.equals(position.getSort()) || position.getDate() == null) {
+                throw new BadRequestException("Invalid cursor " + cursor);
+            }
+        }
 
-        List<SoftwareLicense> licenses = softwareLicenseRepository.findSoftwareLicenseByExpireDateBetween(start, end);
-        return softwareLicenseMapper.toDto(licenses);
+        // one extra license tells whether there is a next page
+        List<SoftwareLicenseDto> licenses = licenseIndex.findExpiring(from, to,
+                position == null ? null : position.getDate(), position == null ? null : position.getId(), pageSize + 1);
+
+        SoftwareLicensePageDto page = new SoftwareLicensePageDto();
+        page.setLimit(pageSize);
+        page.setFrom(from);
+        page.setTo(to);
+        if (licenses.size() > pageSize) {
+            licenses = licenses.subList(0, pageSize);
+            SoftwareLicenseDto last = licenses.get(pageSize - 1);
+            page.setNextCursor(new KeysetCursor(KeysetCursor.SORT_EXPIRE_DATE, last.getExpireDate(), last.getId()).encode());
+        }
+        page.setItems(licenses);
+        return page;
     }
 
 }
-
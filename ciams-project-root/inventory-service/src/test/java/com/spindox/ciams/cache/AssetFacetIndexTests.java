@@ -0,0 +1,152 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.repository.AssetFacets;
+import com.spindox.ciams.repository.AssetLicenseLink;
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetSerialNumber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the facet search on assets held in memory, and that the invalidated assets
+ * are patched, added and removed by the next search
+ */
+class AssetFacetIndexTests {
+
+    private static final AssetFacetIndex.Filter ALL = new AssetFacetIndex.Filter(Set.of(), Set.of(), Set.of(), null, null, null);
+
+    private record Stored(String serialNumber, Long officeId, Long assetTypeId, List<Long> licenseIds) {
+    }
+
+    private final Map<Long, Stored> assets = new TreeMap<>();
+
+    private AssetFacetIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        AssetRepository assetRepository = mock(AssetRepository.class);
+        when(assetRepository.findAllFacets()).thenAnswer(call -> facets(assets.keySet()));
+        when(assetRepository.findFacetsByIds(any())).thenAnswer(call -> facets(call.getArgument(0)));
+        when(assetRepository.findAllLicenseLinks()).thenAnswer(call -> links(assets.keySet()));
+        when(assetRepository.findLicenseLinksByIds(any())).thenAnswer(call -> links(call.getArgument(0)));
+        when(assetRepository.findAllSerialNumbers()).thenAnswer(call -> serialNumbers(assets.keySet()));
+        when(assetRepository.findSerialNumbersByIds(any())).thenAnswer(call -> serialNumbers(call.getArgument(0)));
+        when(assetRepository.findSerialNumbers(any())).thenAnswer(call -> {
+            Collection<String> serials = call.getArgument(0);
+            return serialNumbers(assets.entrySet().stream()
+                    .filter(asset -> serials.contains(asset.getValue().serialNumber()))
+                    .map(Map.Entry::getKey).toList());
+        });
+        SerialNumberIndex serialNumberIndex = new SerialNumberIndex(assetRepository);
+        index = new AssetFacetIndex(assetRepository, serialNumberIndex);
+
+        assets.put(10L, new Stored("SN-10", 1L, 1L, List.of(100L)));
+        assets.put(20L, new Stored("SN-20", 1L, 2L, List.of(100L, 200L)));
+        assets.put(30L, new Stored("XY-30", 2L, 2L, List.of()));
+    }
+
+    @Test
+    void searchCountsEveryDimension() {
+        AssetFacetIndex.Result result = index.search(new AssetFacetIndex.Filter(Set.of(1L), Set.of(), Set.of(), null, null, null), null, 10);
+
+        assertEquals(List.of(10L, 20L), result.ids());
+        assertEquals(2, result.total());
+        // the office counts ignore the office filter
+        assertEquals(Map.of(1L, 2, 2L, 1), result.offices());
+        assertEquals(Map.of(1L, 1, 2L, 1), result.assetTypes());
+        assertEquals(Map.of(100L, 2, 200L, 1), result.licenses());
+
+        AssetFacetIndex.Result page = index.search(ALL, 10L, 1);
+        assertEquals(List.of(20L), page.ids());
+        assertEquals(3, page.total());
+    }
+
+    @Test
+    void serialNumberPrefixComesFromTheSerialNumberIndex() {
+        assertEquals(List.of(10L, 20L), index.search(new AssetFacetIndex.Filter(Set.of(), Set.of(), Set.of(), null, null, "sn-"), null, 10).ids());
+        assertEquals(List.of(30L), index.search(new AssetFacetIndex.Filter(Set.of(), Set.of(), Set.of(), null, null, "xY"), null, 10).ids());
+    }
+
+    @Test
+    void invalidatedAssetsArePatchedAddedAndRemoved() {
+        index.search(ALL, null, 10);
+
+        // a move, a new asset between the others, a new one after them and a deletion
+        assets.put(10L, new Stored("SN-10", 2L, 1L, List.of(200L)));
+        assets.put(15L, new Stored("SN-15", 3L, 1L, List.of(300L)));
+        assets.put(40L, new Stored("SN-40", 3L, 3L, List.of()));
+        assets.remove(30L);
+        index.invalidateIds(List.of(10L, 15L, 30L));
+        index.invalidateSerialNumbers(List.of("SN-40"));
+
+        AssetFacetIndex.Result result = index.search(ALL, null, 10);
+        assertEquals(List.of(10L, 15L, 20L, 40L), result.ids());
+        assertEquals(Map.of(1L, 1, 2L, 1, 3L, 2), result.offices());
+        assertEquals(Map.of(100L, 1, 200L, 2, 300L, 1), result.licenses());
+
+        // the assets of a renamed office are reloaded as they are now
+        assets.put(15L, new Stored("SN-15", 1L, 1L, List.of(300L)));
+        index.invalidateOffices(List.of(3L));
+        assertEquals(Map.of(1L, 2, 2L, 1, 3L, 1), index.search(ALL, null, 10).offices());
+    }
+
+    private List<AssetFacets> facets(Collection<Long> ids) {
+        List<AssetFacets> found = new ArrayList<>();
+        for (Long id : ids) {
+            Stored stored = assets.get(id);
+            if (stored != null) {
+                found.add(new AssetFacets() {
+                    public Long getId() { return id; }
+                    public String getSerialNumber() { return stored.serialNumber(); }
+                    public Date getAcquisitionDate() { return null; }
+                    public Long getOfficeId() { return stored.officeId(); }
+                    public Long getAssetTypeId() { return stored.assetTypeId(); }
+                });
+            }
+        }
+        return found;
+    }
+
+    private List<AssetLicenseLink> links(Collection<Long> ids) {
+        List<AssetLicenseLink> found = new ArrayList<>();
+        for (Long id : ids) {
+            Stored stored = assets.get(id);
+            if (stored != null) {
+                for (Long licenseId : stored.licenseIds()) {
+                    found.add(new AssetLicenseLink() {
+                        public Long getAssetId() { return id; }
+                        public Long getLicenseId() { return licenseId; }
+                    });
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<AssetSerialNumber> serialNumbers(Collection<Long> ids) {
+        List<AssetSerialNumber> found = new ArrayList<>();
+        for (Long id : ids) {
+            Stored stored = assets.get(id);
+            if (stored != null) {
+                found.add(new AssetSerialNumber() {
+                    public Long getId() { return id; }
+                    public String getSerialNumber() { return stored.serialNumber(); }
+                });
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,172 @@
+package com.spindox.ciams.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.spindox.ciams.config.CacheConfig;
+import com.spindox.ciams.dto.AssetDto;
+import com.spindox.ciams.dto.AssetTypeDto;
+import com.spindox.ciams.dto.OfficeDto;
+import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.model.AssetType;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.OfficeRepository;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import com.spindox.ciams.service.AssetService;
+import com.spindox.ciams.service.AssetTypeService;
+import com.spindox.ciams.service.OfficeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the writes publish their invalidations and that the invalidations
+ * received from the other replicas evict the local entries
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ciams-invalidation;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "ciams.cache.invalidation.transport=local"
+})
+class CacheInvalidatorTests {
+
+    @Autowired
+    private LocalCacheInvalidationTransport transport;
+
+    @Autowired
+    private OfficeService officeService;
+
+    @Autowired
+    private OfficeRepository officeRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private AssetService assetService;
+
+    @Autowired
+    private AssetTypeService assetTypeService;
+
+    @Autowired
+    private AssetTypeRepository assetTypeRepository;
+
+    @Autowired
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    @Autowired
+    private InventoryCounters inventoryCounters;
+
+    @Autowired
+    private CollectionVersions collectionVersions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void writesPublishInvalidations() {
+        List<CacheInvalidation> published = new CopyOnWriteArrayList<>();
+        transport.subscribe(published::add);
+
+        OfficeDto office = new OfficeDto();
+        office.setName("Milano");
+        OfficeDto saved = officeService.saveOffice(office);
+
+        assertEquals(1, published.size());
+        assertEquals(CacheInvalidation.Type.OFFICE, published.get(0).getType());
+        assertEquals(List.of(String.valueOf(saved.getId())), published.get(0).getKeys());
+    }
+
+    @Test
+    void invalidationsFromOtherReplicasEvictTheEntries() {
+        Office office = new Office();
+        office.setName("Torino");
+        Long id = officeRepository.save(office).getId();
+        officeService.getOfficeById(id);
+        officeService.getAllOffices();
+        assertNotNull(cached(CacheConfig.OFFICE_BY_ID, id));
+
+        transport.receive(new CacheInvalidation("another-replica", CacheInvalidation.Type.OFFICE, List.of(String.valueOf(id))));
+
+        assertNull(cached(CacheConfig.OFFICE_BY_ID, id));
+        assertNull(cached(CacheConfig.OFFICE_LIST, CacheConfig.LIST_KEY));
+    }
+
+    @Test
+    void countersFollowTheWritesOfEveryReplica() {
+        Office office = new Office();
+        office.setName("Genova");
+        Long officeId = officeRepository.save(office).getId();
+        AssetType assetType = new AssetType();
+        assetType.setName("Laptop");
+        Long assetTypeId = assetTypeRepository.save(assetType).getId();
+        SoftwareLicense license = new SoftwareLicense();
+        license.setName("Office suite");
+        license.setExpireDate(new Date());
+        Long licenseId = softwareLicenseRepository.save(license).getId();
+        assertEquals(0, inventoryCounters.get(InventoryCounters.Dimension.OFFICE, officeId));
+
+        AssetDto asset = new AssetDto();
+        asset.setSerialNumber("SN-COUNTERS");
+        asset.setOffice(new OfficeDto());
+        asset.getOffice().setId(officeId);
+        asset.setAssetType(new AssetTypeDto());
+        asset.getAssetType().setId(assetTypeId);
+        SoftwareLicenseDto installed = new SoftwareLicenseDto();
+        installed.setId(licenseId);
+        asset.setSoftwareLicenses(List.of(installed));
+        assetService.saveAsset(asset);
+
+        assertEquals(1, inventoryCounters.get(InventoryCounters.Dimension.OFFICE, officeId));
+        assertEquals(1, inventoryCounters.get(InventoryCounters.Dimension.ASSET_TYPE, assetTypeId));
+        assertEquals(1, inventoryCounters.get(InventoryCounters.Dimension.LICENSE, licenseId));
+
+        transport.receive(new CacheInvalidation("another-replica", CacheInvalidation.Type.COUNTERS,
+                List.of("OFFICE:" + officeId + ":2")));
+        assertEquals(3, inventoryCounters.get(InventoryCounters.Dimension.OFFICE, officeId));
+
+        // the reconciliation brings the counter back to the rows
+        inventoryCounters.reconcile();
+        assertEquals(1, inventoryCounters.get(InventoryCounters.Dimension.OFFICE, officeId));
+    }
+
+    @Test
+    void collectionETagsFollowTheWritesOfEveryReplica() {
+        String before = collectionVersions.etag(CacheInvalidation.Type.ASSET_TYPE);
+
+        AssetTypeDto assetType = new AssetTypeDto();
+        assetType.setName("Monitor");
+        assetTypeService.saveAssetType(assetType);
+        String written = collectionVersions.etag(CacheInvalidation.Type.ASSET_TYPE);
+        assertNotEquals(before, written);
+
+        // the version increased by the write of another replica is read when its message arrives
+        long version = jdbcTemplate.queryForObject(
+                "select version from inventory.collection_version where collection = 'ASSET_TYPE'", Long.class);
+        jdbcTemplate.update("update inventory.collection_version set version = ? where collection = 'ASSET_TYPE'", version + 1);
+        assertEquals(written, collectionVersions.etag(CacheInvalidation.Type.ASSET_TYPE));
+        transport.receive(new CacheInvalidation("another-replica", CacheInvalidation.Type.ASSET_TYPE, List.of("1")));
+        assertEquals("\"" + (version + 1) + "\"", collectionVersions.etag(CacheInvalidation.Type.ASSET_TYPE));
+    }
+
+    // the regions are loading caches, a lookup through Spring would load the missing entries
+    private Object cached(String region, Object key) {
+        return ((Cache<?, ?>) cacheManager.getCache(region).getNativeCache()).asMap().get(key);
+    }
+}
@@ -0,0 +1,178 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.dto.SoftwareLicenseDto;
+import com.spindox.ciams.mapper.SoftwareLicenseMapper;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the expiry windows, the pagination and the name search of the license index on licenses held in memory
+ */
+class LicenseIndexTests {
+
+    private static final long DAY = 86_400_000L;
+
+    private final Map<Long, SoftwareLicense> stored = new TreeMap<>();
+
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    private LicenseIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        softwareLicenseRepository = mock(SoftwareLicenseRepository.class);
+        when(softwareLicenseRepository.findAll()).thenAnswer(call -> new ArrayList<>(stored.values()));
+        when(softwareLicenseRepository.findAllById(any())).thenAnswer(call -> {
+            Collection<Long> ids = call.getArgument(0);
+            return ids.stream().map(stored::get).filter(license -> license != null).toList();
+        });
+        index = new LicenseIndex(softwareLicenseRepository, Mappers.getMapper(SoftwareLicenseMapper.class));
+    }
+
+    @Test
+    void findExpiringKeepsTheWindowBoundsInclusive() {
+        store(1L, "Office", 10 * DAY);
+        store(2L, "Antivirus", 20 * DAY);
+        store(3L, "Backup", 30 * DAY);
+        store(4L, "Perpetual", null);
+
+        assertEquals(List.of(1L, 2L, 3L), ids(index.findExpiring(null, null, null, null, 10)));
+        assertEquals(List.of(1L, 2L), ids(index.findExpiring(new Date(10 * DAY), new Date(20 * DAY), null, null, 10)));
+        assertEquals(List.of(2L, 3L), ids(index.findExpiring(new Date(10 * DAY + 1), null, null, null, 10)));
+        assertEquals(List.of(1L), ids(index.findExpiring(null, new Date(20 * DAY - 1), null, null, 10)));
+        assertTrue(index.findExpiring(new Date(21 * DAY), new Date(29 * DAY), null, null, 10).isEmpty());
+    }
+
+    @Test
+    void findExpiringPagesWithTheCursor() {
+        // two licenses expiring together are ordered by id
+        store(1L, "Office", 10 * DAY);
+        store(3L, "Antivirus", 20 * DAY);
+        store(2L, "Backup", 20 * DAY);
+        store(4L, "Compiler", 30 * DAY);
+
+        Date from = new Date(15 * DAY);
+        List<SoftwareLicenseDto> first = index.findExpiring(from, null, null, null, 2);
+        assertEquals(List.of(2L, 3L), ids(first));
+        SoftwareLicenseDto last = first.get(1);
+        assertEquals(List.of(4L), ids(index.findExpiring(from, null, last.getExpireDate(), last.getId(), 2)));
+        // a cursor before the window doesn't widen it
+        assertEquals(List.of(2L, 3L), ids(index.findExpiring(from, null, new Date(0), 0L, 2)));
+        // a cursor after the window ends leaves nothing
+        assertTrue(index.findExpiring(null, new Date(20 * DAY), new Date(30 * DAY), 4L, 2).isEmpty());
+    }
+
+    @Test
+    void findExpiringReloadsTheInvalidatedLicenses() {
+        store(1L, "Office", 10 * DAY);
+        store(2L, "Antivirus", 20 * DAY);
+        assertEquals(List.of(1L, 2L), ids(index.findExpiring(null, null, null, null, 10)));
+
+        store(1L, "Office", 40 * DAY);
+        stored.remove(2L);
+        store(3L, "Backup", 5 * DAY);
+        // nothing is reloaded before the invalidation
+        assertEquals(List.of(1L, 2L), ids(index.findExpiring(null, null, null, null, 10)));
+
+        index.invalidate(List.of(1L, 2L, 3L));
+        assertEquals(List.of(3L, 1L), ids(index.findExpiring(null, null, null, null, 10)));
+        // without changes the index is not read again
+        index.findExpiring(null, null, null, null, 10);
+        verify(softwareLicenseRepository, times(1)).findAll();
+        verify(softwareLicenseRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void searchByNameIgnoresTheCase() {
+        store(1L, "Microsoft Office", null);
+        store(2L, "LibreOffice", null);
+        store(3L, "Antivirus", null);
+
+        assertEquals(List.of(2L, 1L), ids(index.searchByName("OFFICE", 10)));
+        assertEquals(List.of(3L), ids(index.searchByName("aNtIvIr", 10)));
+        assertTrue(index.searchByName("offices", 10).isEmpty());
+    }
+
+    @Test
+    void searchByNameRanksPrefixesThenSimilarity() {
+        store(1L, "Office Professional Plus", null);
+        store(2L, "Microsoft Office", null);
+        store(3L, "Office", null);
+        store(4L, "LibreOffice", null);
+        store(5L, "Office Home", null);
+
+        // the names starting with the text first, the shortest ones first, then the others the same way
+        assertEquals(List.of(3L, 5L, 1L, 4L, 2L), ids(index.searchByName("office", 10)));
+        // the limit keeps the best ones
+        assertEquals(List.of(3L, 5L), ids(index.searchByName("office", 2)));
+        // equally similar names are ordered by name
+        store(6L, "Office Hone", null);
+        index.invalidate(List.of(6L));
+        assertEquals(List.of(3L, 5L, 6L), ids(index.searchByName("office", 3)));
+    }
+
+    @Test
+    void searchByNameScansEveryNameForShortTexts() {
+        store(1L, "Visual Studio", null);
+        store(2L, "Vim", null);
+        store(3L, "Emacs", null);
+
+        // no trigram in the text, every name is checked
+        assertEquals(List.of(2L, 1L), ids(index.searchByName("v", 10)));
+        assertEquals(List.of(2L), ids(index.searchByName("VI", 1)));
+        // an empty text is in every name, ordered by name
+        assertEquals(List.of(3L, 2L, 1L), ids(index.searchByName("", 10)));
+    }
+
+    @Test
+    void searchByNameReloadsTheInvalidatedLicenses() {
+        store(1L, "Office", null);
+        store(2L, "Antivirus", null);
+        assertEquals(List.of(1L), ids(index.searchByName("offi", 10)));
+
+        // the old trigrams are dropped, the new ones added
+        store(1L, "Backup", null);
+        stored.remove(2L);
+        store(3L, "Office Home", null);
+        index.invalidate(List.of(1L, 2L, 3L));
+        assertEquals(List.of(3L), ids(index.searchByName("offi", 10)));
+        assertEquals(List.of(1L), ids(index.searchByName("back", 10)));
+        assertTrue(index.searchByName("virus", 10).isEmpty());
+
+        // a trigram of a single license goes away with it
+        stored.remove(1L);
+        index.invalidate(List.of(1L));
+        assertTrue(index.searchByName("backup", 10).isEmpty());
+        assertEquals(List.of(3L), ids(index.searchByName("home", 10)));
+    }
+
+    private void store(Long id, String name, Long expireDate) {
+        SoftwareLicense license = new SoftwareLicense();
+        license.setId(id);
+        license.setName(name);
+        license.setExpireDate(expireDate == null ? null : new Date(expireDate));
+        stored.put(id, license);
+    }
+
+    private static List<Long> ids(List<SoftwareLicenseDto> licenses) {
+        return licenses.stream().map(SoftwareLicenseDto::getId).toList();
+    }
+}
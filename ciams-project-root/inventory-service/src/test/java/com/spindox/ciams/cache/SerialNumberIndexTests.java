@@ -0,0 +1,132 @@
+package com.spindox.ciams.cache;
+
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetSerialNumber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the prefix suggestions on serial numbers held in memory, the bounds of the prefix, the case,
+ * and that the invalidated assets and serial numbers are reloaded by the next query
+ */
+class SerialNumberIndexTests {
+
+    private final Map<Long, String> stored = new TreeMap<>();
+
+    private AssetRepository assetRepository;
+
+    private SerialNumberIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        assetRepository = mock(AssetRepository.class);
+        when(assetRepository.findAllSerialNumbers()).thenAnswer(call -> serialNumbers(stored.keySet()));
+        when(assetRepository.findSerialNumbersByIds(any())).thenAnswer(call -> serialNumbers(call.getArgument(0)));
+        when(assetRepository.findSerialNumbers(any())).thenAnswer(call -> {
+            Collection<String> serials = call.getArgument(0);
+            return serialNumbers(stored.entrySet().stream()
+                    .filter(asset -> serials.contains(asset.getValue()))
+                    .map(Map.Entry::getKey).toList());
+        });
+        index = new SerialNumberIndex(assetRepository);
+    }
+
+    @Test
+    void suggestKeepsThePrefixBounds() {
+        stored.put(1L, "SN-1");
+        stored.put(2L, "SN-10");
+        stored.put(3L, "SN-100");
+        stored.put(4L, "SN-2");
+        stored.put(5L, "SNA");
+        stored.put(6L, "S");
+
+        // a serial equal to the prefix is the first one, the longer ones follow
+        assertEquals(List.of("SN-1", "SN-10", "SN-100"), index.suggest("SN-1", 10));
+        assertEquals(List.of("SN-100"), index.suggest("SN-100", 10));
+        assertEquals(List.of("SN-2"), index.suggest("SN-2", 10));
+        assertTrue(index.suggest("SN-3", 10).isEmpty());
+        assertTrue(index.suggest("SN-1000", 10).isEmpty());
+        assertEquals(List.of("S", "SN-1", "SN-10", "SN-100", "SN-2", "SNA"), index.suggest("S", 10));
+        // the limit keeps the first ones
+        assertEquals(List.of("S", "SN-1"), index.suggest("S", 2));
+        assertEquals(List.of(1L, 2L, 3L), index.findIds("SN-1"));
+    }
+
+    @Test
+    void suggestIgnoresTheCaseAndKeepsCaseVariantsApart() {
+        stored.put(1L, "ab-1");
+        stored.put(2L, "AB-1");
+        stored.put(3L, "Ab-2");
+
+        // the serials differing by case only are both suggested, the uppercase one first
+        assertEquals(List.of("AB-1", "ab-1", "Ab-2"), index.suggest("ab", 10));
+        assertEquals(List.of("AB-1", "ab-1"), index.suggest("aB-1", 10));
+        assertEquals(List.of(2L, 1L), index.findIds("AB-1"));
+
+        // one of them goes away alone
+        stored.remove(1L);
+        index.invalidateIds(List.of(1L));
+        assertEquals(List.of("AB-1"), index.suggest("ab-1", 10));
+        assertEquals(List.of(2L), index.findIds("ab-1"));
+    }
+
+    @Test
+    void suggestReloadsTheInvalidatedAssets() {
+        stored.put(1L, "SN-1");
+        stored.put(2L, "SN-2");
+        assertEquals(List.of("SN-1", "SN-2"), index.suggest("sn", 10));
+
+        // a changed serial number, a deletion and an imported asset known by its serial number only
+        stored.put(1L, "XY-1");
+        stored.remove(2L);
+        stored.put(3L, "SN-3");
+        // nothing is reloaded before the invalidation
+        assertEquals(List.of("SN-1", "SN-2"), index.suggest("sn", 10));
+
+        index.invalidateIds(List.of(1L, 2L));
+        index.invalidateSerialNumbers(List.of("SN-3"));
+        assertEquals(List.of("SN-3"), index.suggest("sn", 10));
+        assertEquals(List.of("XY-1"), index.suggest("xy", 10));
+        assertEquals(List.of(1L), index.findIds("xy-1"));
+
+        // the old serial number of a renamed asset doesn't hide it when given back to another one
+        stored.put(4L, "SN-1");
+        index.invalidateSerialNumbers(List.of("SN-1"));
+        assertEquals(List.of("SN-1", "SN-3"), index.suggest("sn", 10));
+        assertEquals(List.of(4L), index.findIds("sn-1"));
+
+        // without changes the index is not read again
+        index.suggest("sn", 10);
+        verify(assetRepository, times(1)).findAllSerialNumbers();
+        verify(assetRepository, times(1)).findSerialNumbersByIds(any());
+        verify(assetRepository, times(2)).findSerialNumbers(any());
+    }
+
+    private List<AssetSerialNumber> serialNumbers(Collection<Long> ids) {
+        List<AssetSerialNumber> found = new ArrayList<>();
+        for (Long id : ids) {
+            String serialNumber = stored.get(id);
+            if (serialNumber != null) {
+                found.add(new AssetSerialNumber() {
+                    public Long getId() { return id; }
+                    public String getSerialNumber() { return serialNumber; }
+                });
+            }
+        }
+        return found;
+    }
+}
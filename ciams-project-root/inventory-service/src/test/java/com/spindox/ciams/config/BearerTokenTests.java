@@ -0,0 +1,206 @@
+package com.spindox.ciams.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that the tokens of the auth service are verified with its published keys,
+ * that the writes take the writer role and the inventory audience, that a rotated key is picked up and that Basic still works as a fallback.
+ * The key set is served by a local HTTP server standing for the auth service
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ciams-token;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "ciams.cache.invalidation.transport=local",
+        "ciams.auth.token.jwks-min-refetch-interval=0s"
+})
+@AutoConfigureMockMvc
+class BearerTokenTests {
+
+    private static final String OFFICE = "{\"name\":\"%s\"}";
+
+    private static final KeyPair FIRST_KEY = generate();
+    private static final KeyPair ROTATED_KEY = generate();
+
+    // the JWKs published by the stand-in auth service
+    private static final List<String> published = new CopyOnWriteArrayList<>();
+
+    private static HttpServer jwksServer;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void jwksUri(DynamicPropertyRegistry registry) throws IOException {
+        published.add(jwk("first", FIRST_KEY));
+        jwksServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        jwksServer.createContext("/.well-known/jwks.json", exchange -> {
+            String keys = String.join(",", published);
+            byte[] body = ("{\"keys\":[" + keys + "]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        jwksServer.start();
+        registry.add("ciams.auth.token.jwks-uri",
+                () -> "http://localhost:" + jwksServer.getAddress().getPort() + "/.well-known/jwks.json");
+    }
+
+    @AfterAll
+    static void stopJwksServer() {
+        jwksServer.stop(0);
+    }
+
+    @Test
+    void validTokenAuthenticatesTheWrites() throws Exception {
+        mockMvc.perform(post("/offices/")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token("first", FIRST_KEY, "ciams-auth", 300))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Token office")))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    void writesTakeTheWriterRole() throws Exception {
+        // a signup only gets the USER role
+        String user = token("first", FIRST_KEY, "ciams-auth", "\"ciams-inventory\"", "USER", 300);
+        mockMvc.perform(post("/offices/")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Forbidden office")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/offices/").header(HttpHeaders.AUTHORIZATION, "Bearer " + user))
+                .andExpect(status().isOk());
+        // an array of audiences
+        String writer = token("first", FIRST_KEY, "ciams-auth", "[\"ciams-auth\",\"ciams-inventory\"]", "INVENTORY_WRITER", 300);
+        mockMvc.perform(post("/offices/")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + writer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Audiences office")))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    void invalidTokensAreRejected() throws Exception {
+        String expired = token("first", FIRST_KEY, "ciams-auth", -600);
+        String otherIssuer = token("first", FIRST_KEY, "someone-else", 300);
+        String forged = token("first", ROTATED_KEY, "ciams-auth", 300);
+        String unknownKey = token("unknown", ROTATED_KEY, "ciams-auth", 300);
+        String otherAudience = token("first", FIRST_KEY, "ciams-auth", "\"another-service\"", "INVENTORY_WRITER", 300);
+        String noAudience = token("first", FIRST_KEY, "ciams-auth", null, "INVENTORY_WRITER", 300);
+        for (String token : List.of(expired, otherIssuer, forged, unknownKey, otherAudience, noAudience, "not-a-token")) {
+            mockMvc.perform(post("/offices/")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(OFFICE.formatted("Rejected office")))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\""));
+        }
+        // an invalid token is refused on the public endpoints too
+        mockMvc.perform(get("/offices/").header(HttpHeaders.AUTHORIZATION, "Bearer " + expired))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void rotatedKeyIsFetchedOnFirstUse() throws Exception {
+        published.add(jwk("rotated", ROTATED_KEY));
+        mockMvc.perform(post("/offices/")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token("rotated", ROTATED_KEY, "ciams-auth", 300))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Rotated office")))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    void basicRemainsTheFallback() throws Exception {
+        String basic = "Basic " + Base64.getEncoder().encodeToString("user2:password2".getBytes());
+        mockMvc.perform(post("/offices/")
+                        .header(HttpHeaders.AUTHORIZATION, basic)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Basic office")))
+                .andExpect(status().is2xxSuccessful());
+        mockMvc.perform(post("/offices/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(OFFICE.formatted("Anonymous office")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // a token of a writer, meant for the inventory
+    private static String token(String kid, KeyPair key, String issuer, long expiresIn) throws Exception {
+        return token(kid, key, issuer, "\"ciams-inventory\"", "INVENTORY_WRITER", expiresIn);
+    }
+
+    private static String token(String kid, KeyPair key, String issuer, String audience, String role, long expiresIn) throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        String header = "{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"" + kid + "\"}";
+        String claims = "{\"iss\":\"" + issuer + "\",\"sub\":\"token-user\",\"roles\":[\"USER\",\"" + role + "\"],"
+                + (audience == null ? "" : "\"aud\":" + audience + ",")
+                + "\"iat\":" + now + ",\"exp\":" + (now + expiresIn) + "}";
+        String signingInput = base64(header.getBytes(StandardCharsets.UTF_8)) + "." + base64(claims.getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + base64(signature.sign());
+    }
+
+    private static String jwk(String kid, KeyPair key) {
+        RSAPublicKey publicKey = (RSAPublicKey) key.getPublic();
+        return "{\"kty\":\"RSA\",\"kid\":\"" + kid + "\",\"alg\":\"RS256\",\"use\":\"sig\","
+                + "\"n\":\"" + base64(unsigned(publicKey.getModulus())) + "\","
+                + "\"e\":\"" + base64(unsigned(publicKey.getPublicExponent())) + "\"}";
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static KeyPair generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.spindox.ciams.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.spindox.ciams.model.Asset;
+import com.spindox.ciams.model.AssetType;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.AssetRepository;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.OfficeRepository;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import com.spindox.ciams.service.AssetDocumentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that the asset read endpoints issue a constant number of SQL statements,
+ * whatever the number of assets, offices, types and licenses involved.
+ * The assets are read from the documents of the read model, with everything they embed
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ciams;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "ciams.assets.export.flush-interval=3",
+        "ciams.cache.invalidation.transport=local"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AssetQueryCountTests {
+
+    private static final int ASSETS = 40;
+
+    private static final String BASIC_AUTH = "Basic " + Base64.getEncoder().encodeToString("user1:password1".getBytes());
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private OfficeRepository officeRepository;
+
+    @Autowired
+    private AssetTypeRepository assetTypeRepository;
+
+    @Autowired
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    @Autowired
+    private AssetDocumentService assetDocumentService;
+
+    private Statistics statistics;
+
+    private Long firstAssetId;
+
+    private List<Office> offices;
+
+    private List<AssetType> assetTypes;
+
+    private List<SoftwareLicense> licenses;
+
+    @BeforeAll
+    void createInventory() {
+        offices = new ArrayList<>();
+        assetTypes = new ArrayList<>();
+        licenses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Office office = new Office();
+            office.setName("Office " + i);
+            offices.add(officeRepository.save(office));
+
+            AssetType assetType = new AssetType();
+            assetType.setName("Type " + i);
+            assetTypes.add(assetTypeRepository.save(assetType));
+
+            SoftwareLicense license = new SoftwareLicense();
+            license.setName("License " + i);
+            license.setExpireDate(new Date());
+            licenses.add(softwareLicenseRepository.save(license));
+        }
+        for (int i = 0; i < ASSETS; i++) {
+            Asset asset = new Asset();
+            asset.setSerialNumber("SN-" + i);
+            // a quarter of the assets has no acquisition date
+            asset.setAcquisitionDate(i % 4 == 0 ? null : new Date(1_700_000_000_000L + i * 86_400_000L));
+            asset.setOffice(offices.get(i % offices.size()));
+            asset.setAssetType(assetTypes.get(i % assetTypes.size()));
+            asset.setSoftwareLicenses(new HashSet<>(List.of(licenses.get(i % licenses.size()),
+                    licenses.get((i + 1) % licenses.size()))));
+            Asset saved = assetRepository.save(asset);
+            if (firstAssetId == null) {
+                firstAssetId = saved.getId();
+            }
+        }
+        // the assets have been saved without the service, their documents are written by a rebuild
+        assetDocumentService.rebuild();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @BeforeEach
+    void clearStatistics() {
+        statistics.clear();
+    }
+
+    @Test
+    void getAssetByIdUsesOneStatement() throws Exception {
+        mockMvc.perform(get("/assets/{id}", firstAssetId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.softwareLicenses.length()").value(2));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getAssetBySerialNumberUsesOneStatement() throws Exception {
+        mockMvc.perform(get("/assets/serialnumber/{sn}", "SN-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.office.name").value("Office 1"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void serialNumberLookupsAreCached() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/assets/serialnumber/{sn}", "SN-2")).andExpect(status().isOk());
+            mockMvc.perform(get("/assets/serialnumber/{sn}", "SN-UNKNOWN")).andExpect(status().isNotFound());
+        }
+        // one load for the registered serial number, one for the unknown one
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void assetPageByIdUsesOneStatement() throws Exception {
+        mockMvc.perform(get("/assets/").param("limit", String.valueOf(ASSETS)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(ASSETS));
+        // the documents of the page, nothing is joined or fetched afterwards
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void assetPageByAcquisitionDateUsesTwoStatements() throws Exception {
+        mockMvc.perform(get("/assets/").param("limit", String.valueOf(ASSETS)).param("sort", "acquisitionDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(ASSETS));
+        // the dated documents, then the ones without a date
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchReadsOnlyThePage() throws Exception {
+        // the first search builds the facet index
+        mockMvc.perform(get("/assets/search")).andExpect(status().isOk());
+        statistics.clear();
+
+        mockMvc.perform(get("/assets/search").param("officeId", String.valueOf(offices.get(0).getId())).param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(ASSETS / 4))
+                .andExpect(jsonPath("$.items.length()").value(4))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                // the office counts ignore the office filter
+                .andExpect(jsonPath("$.facets.offices.length()").value(4))
+                .andExpect(jsonPath("$.facets.assetTypes.length()").value(1))
+                .andExpect(jsonPath("$.facets.assetTypes[0].name").value("Type 0"))
+                .andExpect(jsonPath("$.facets.softwareLicenses.length()").value(2));
+        // the documents of the page
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void createAssetRunsInOneTransaction() throws Exception {
+        String asset = "{\"serialNumber\":\"SN-NEW\",\"office\":{\"id\":" + offices.get(1).getId() + "}," +
+                "\"assetType\":{\"id\":" + assetTypes.get(2).getId() + "}," +
+                "\"softwareLicenses\":[{\"id\":" + licenses.get(3).getId() + "}]}";
+        MvcResult created = mockMvc.perform(post("/assets/").header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .contentType(MediaType.APPLICATION_JSON).content(asset))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.office.name").value("Office 1"))
+                .andExpect(jsonPath("$.softwareLicenses[0].name").value("License 3"))
+                .andReturn();
+        // the references are checked with one query, then the asset and its document are written
+        assertEquals(1, statistics.getTransactionCount());
+        // the check, the inserts of the asset and of its license row, the read of the graph of the document.
+        // The document itself is written with JDBC, outside of the Hibernate statistics
+        assertEquals(4, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(post("/assets/").header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .contentType(MediaType.APPLICATION_JSON).content(asset.replace("SN-NEW", "SN-OTHER")
+                                .replace(String.valueOf(licenses.get(3).getId()), "-1")))
+                .andExpect(status().isNotFound());
+
+        Number id = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        mockMvc.perform(delete("/assets/{id}", id).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void conditionalRequestsUseTheETags() throws Exception {
+        String offices = mockMvc.perform(get("/offices/")).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String asset = mockMvc.perform(get("/assets/{id}", firstAssetId)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+
+        mockMvc.perform(get("/offices/").header(HttpHeaders.IF_NONE_MATCH, offices))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/assets/{id}", firstAssetId).header(HttpHeaders.IF_NONE_MATCH, asset))
+                .andExpect(status().isNotModified());
+        // the list is not read and the asset comes from the cache
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // a stale version changes nothing
+        mockMvc.perform(put("/offices/{id}", this.offices.get(0).getId()).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .header(HttpHeaders.IF_MATCH, "\"999\"")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Office renamed\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/assets/{id}", firstAssetId).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .header(HttpHeaders.IF_MATCH, "\"999\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get("/offices/").header(HttpHeaders.IF_NONE_MATCH, offices))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void renamingAnOfficeRewritesTheDocumentsOnly() throws Exception {
+        MvcResult before = mockMvc.perform(get("/assets/{id}", firstAssetId)).andExpect(status().isOk()).andReturn();
+        Number version = JsonPath.read(before.getResponse().getContentAsString(), "$.version");
+        Long officeId = offices.get(0).getId();
+
+        mockMvc.perform(put("/offices/{id}", officeId).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Office 0 renamed\"}"))
+                .andExpect(status().isOk());
+        // the document and the ETag change, the version checked by the writes doesn't
+        MvcResult after = mockMvc.perform(get("/assets/{id}", firstAssetId)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.office.name").value("Office 0 renamed"))
+                .andExpect(jsonPath("$.version").value(version.longValue()))
+                .andReturn();
+        assertNotEquals(before.getResponse().getHeader(HttpHeaders.ETAG), after.getResponse().getHeader(HttpHeaders.ETAG));
+        mockMvc.perform(get("/assets/{id}", firstAssetId).header(HttpHeaders.IF_NONE_MATCH, before.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/offices/{id}", officeId).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Office 0\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void exportUsesOneStatement() throws Exception {
+        MvcResult result = mockMvc.perform(get("/assets/export")).andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(ASSETS, body.lines().filter(line -> !line.isBlank()).count());
+        assertTrue(body.lines().allMatch(line -> line.contains("\"softwareLicenses\":[{")));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,126 @@
+package com.spindox.ciams.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.spindox.ciams.model.AssetType;
+import com.spindox.ciams.model.Office;
+import com.spindox.ciams.repository.AssetTypeRepository;
+import com.spindox.ciams.repository.OfficeRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the serial number suggestions endpoint, the bounds of the prefix, the case and the limit,
+ * and that the created, changed and deleted assets are suggested as they are now
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ciams-suggest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "ciams.assets.suggest.default-limit=3",
+        "ciams.assets.suggest.max-limit=4",
+        "ciams.cache.invalidation.transport=local"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SerialNumberSuggestTests {
+
+    private static final String BASIC_AUTH = "Basic " + Base64.getEncoder().encodeToString("user1:password1".getBytes());
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OfficeRepository officeRepository;
+
+    @Autowired
+    private AssetTypeRepository assetTypeRepository;
+
+    private Long officeId;
+
+    private Long assetTypeId;
+
+    @BeforeAll
+    void createAssets() throws Exception {
+        Office office = new Office();
+        office.setName("Office");
+        officeId = officeRepository.save(office).getId();
+        AssetType assetType = new AssetType();
+        assetType.setName("Type");
+        assetTypeId = assetTypeRepository.save(assetType).getId();
+        for (String serialNumber : List.of("PC-1", "PC-10", "PC-100", "PC-2", "pc-1", "PCX", "LAPTOP-1")) {
+            save(null, serialNumber);
+        }
+    }
+
+    @Test
+    void suggestKeepsThePrefixBoundsAndIgnoresTheCase() throws Exception {
+        // the serials differing by case only are both suggested
+        assertEquals(List.of("PC-1", "pc-1", "PC-10", "PC-100"), suggest("/assets/serialnumber/suggest?prefix=pc-1&limit=10"));
+        assertEquals(List.of("PC-100"), suggest("/assets/serialnumber/suggest?prefix=Pc-100"));
+        assertEquals(List.of("PC-2"), suggest("/assets/serialnumber/suggest?prefix=PC-2"));
+        assertEquals(List.of(), suggest("/assets/serialnumber/suggest?prefix=PC-1000"));
+        assertEquals(List.of(), suggest("/assets/serialnumber/suggest?prefix=PD"));
+        assertEquals(List.of("LAPTOP-1"), suggest("/assets/serialnumber/suggest?prefix=l"));
+    }
+
+    @Test
+    void suggestCapsTheLimit() throws Exception {
+        // 3 by default, at most 4, at least 1
+        assertEquals(List.of("PC-1", "pc-1", "PC-10"), suggest("/assets/serialnumber/suggest?prefix=pc"));
+        assertEquals(List.of("PC-1", "pc-1", "PC-10", "PC-100"), suggest("/assets/serialnumber/suggest?prefix=pc&limit=100"));
+        assertEquals(List.of("PC-1"), suggest("/assets/serialnumber/suggest?prefix=pc&limit=0"));
+        mockMvc.perform(get("/assets/serialnumber/suggest").param("prefix", ""))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void suggestFollowsTheChangedAssets() throws Exception {
+        Number id = save(null, "MON-1");
+        assertEquals(List.of("MON-1"), suggest("/assets/serialnumber/suggest?prefix=mon"));
+
+        // a new serial number replaces the old one
+        save(id, "SCREEN-1");
+        assertEquals(List.of(), suggest("/assets/serialnumber/suggest?prefix=mon"));
+        assertEquals(List.of("SCREEN-1"), suggest("/assets/serialnumber/suggest?prefix=screen"));
+
+        mockMvc.perform(delete("/assets/{id}", id).header(HttpHeaders.AUTHORIZATION, BASIC_AUTH))
+                .andExpect(status().isOk());
+        assertEquals(List.of(), suggest("/assets/serialnumber/suggest?prefix=screen"));
+    }
+
+    private List<String> suggest(String url) throws Exception {
+        String body = mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$");
+    }
+
+    private Number save(Number id, String serialNumber) throws Exception {
+        String asset = "{" + (id == null ? "" : "\"id\":" + id + ",") + "\"serialNumber\":\"" + serialNumber + "\"," +
+                "\"office\":{\"id\":" + officeId + "},\"assetType\":{\"id\":" + assetTypeId + "}}";
+        String body = mockMvc.perform(post("/assets/").header(HttpHeaders.AUTHORIZATION, BASIC_AUTH)
+                        .contentType(MediaType.APPLICATION_JSON).content(asset))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.id");
+    }
+}
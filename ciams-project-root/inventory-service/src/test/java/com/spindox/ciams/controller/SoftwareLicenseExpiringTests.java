@@ -0,0 +1,126 @@
+package com.spindox.ciams.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.spindox.ciams.model.SoftwareLicense;
+import com.spindox.ciams.repository.SoftwareLicenseRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the windows of the expiring licenses endpoint, the next days, the expired licenses
+ * and two dates, and the pages followed through the cursor
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ciams-expiring;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "ciams.cache.invalidation.transport=local"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SoftwareLicenseExpiringTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SoftwareLicenseRepository softwareLicenseRepository;
+
+    private final Instant now = Instant.now();
+
+    @BeforeAll
+    void createLicenses() {
+        save("Expired", now.minus(10, ChronoUnit.DAYS));
+        save("In 5 days", now.plus(5, ChronoUnit.DAYS));
+        save("In 20 days", now.plus(20, ChronoUnit.DAYS));
+        save("In 25 days", now.plus(25, ChronoUnit.DAYS));
+        save("In 60 days", now.plus(60, ChronoUnit.DAYS));
+        save("Perpetual", null);
+    }
+
+    @Test
+    void daysSelectTheNextDays() throws Exception {
+        assertEquals(List.of("In 5 days"), names("/softwarelicences/expiring?days=10"));
+        // 30 days by default
+        assertEquals(List.of("In 5 days", "In 20 days", "In 25 days"), names("/softwarelicences/expiring"));
+        assertEquals(List.of(), names("/softwarelicences/expiring?days=0"));
+    }
+
+    @Test
+    void expiredSelectsThePastOnly() throws Exception {
+        assertEquals(List.of("Expired"), names("/softwarelicences/expiring?expired=true"));
+    }
+
+    @Test
+    void fromAndToSelectBetweenTwoDates() throws Exception {
+        assertEquals(List.of("In 20 days", "In 25 days"), names("/softwarelicences/expiring?from="
+                + now.plus(10, ChronoUnit.DAYS) + "&to=" + now.plus(30, ChronoUnit.DAYS)));
+        // an open end
+        assertEquals(List.of("In 25 days", "In 60 days"), names("/softwarelicences/expiring?from=" + now.plus(21, ChronoUnit.DAYS)));
+        assertEquals(List.of("Expired"), names("/softwarelicences/expiring?to=" + now));
+    }
+
+    @Test
+    void invalidWindowsAreRefused() throws Exception {
+        mockMvc.perform(get("/softwarelicences/expiring").param("days", "10").param("expired", "true"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/softwarelicences/expiring").param("days", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/softwarelicences/expiring").param("from", now.plus(1, ChronoUnit.DAYS).toString())
+                        .param("to", now.toString()))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/softwarelicences/expiring").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void pagesFollowTheCursor() throws Exception {
+        List<String> names = new ArrayList<>();
+        String next = "/softwarelicences/expiring?days=90&limit=2";
+        int pages = 0;
+        while (next != null) {
+            String body = mockMvc.perform(get(URI.create(next))).andExpect(status().isOk())
+                    .andExpect(jsonPath("$.limit").value(2))
+                    .andReturn().getResponse().getContentAsString();
+            names.addAll(JsonPath.read(body, "$.items[*].name"));
+            next = JsonPath.read(body, "$.next");
+            pages++;
+        }
+        assertEquals(List.of("In 5 days", "In 20 days", "In 25 days", "In 60 days"), names);
+        assertEquals(2, pages);
+    }
+
+    private List<String> names(String url) throws Exception {
+        String body = mockMvc.perform(get(URI.create(url))).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.items[*].name");
+    }
+
+    private void save(String name, Instant expireDate) {
+        SoftwareLicense license = new SoftwareLicense();
+        license.setName(name);
+        license.setExpireDate(expireDate == null ? null : Date.from(expireDate));
+        softwareLicenseRepository.save(license);
+    }
+}